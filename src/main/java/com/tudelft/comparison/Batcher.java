@@ -0,0 +1,142 @@
+package com.tudelft.comparison;
+
+import com.tudelft.paillier.EncryptedNumber;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Collects single comparisons into batches per key and hands every batch to a flush action, which evaluates
+ * it and completes its results. A batch is flushed once it holds {@code maxBatchSize} comparisons, or once
+ * the batching window has passed since its first comparison. Used by the {@link ComparisonCoalescer} and
+ * the {@link VerifierClient}.
+ *
+ * @param <K> the key of the comparisons which can be evaluated together
+ */
+final class Batcher<K>
+{
+	/**
+	 * Comparisons waiting to be evaluated together.
+	 */
+	static final class Batch<K>
+	{
+		final K                                        key;
+		final List<EncryptedNumber>                    operands = new ArrayList<>();
+		final List<CompletableFuture<EncryptedNumber>> results  = new ArrayList<>();
+		
+		private Batch(K key)
+		{
+			this.key = key;
+		}
+		
+		/**
+		 * Fails all comparisons of the batch.
+		 */
+		void fail(Throwable e)
+		{
+			results.forEach(result -> result.completeExceptionally(e));
+		}
+	}
+	
+	private final Consumer<Batch<K>>                 flushAction;
+	private final Supplier<ScheduledExecutorService> timer;
+	private final Map<K, Batch<K>>                   batches = new HashMap<>();
+	
+	private int  maxBatchSize;
+	private long windowMicros;
+	
+	/**
+	 * @param flushAction  evaluates a batch and completes its results, called outside the lock of the batcher
+	 * @param timer        the timer of the batching window, only asked for once a window is used
+	 * @param maxBatchSize the maximum number of comparisons per batch
+	 * @param windowMicros how long comparisons wait for a batch to fill up, 0 to flush them at once
+	 */
+	Batcher(Consumer<Batch<K>> flushAction, Supplier<ScheduledExecutorService> timer, int maxBatchSize,
+	        long windowMicros)
+	{
+		this.flushAction = flushAction;
+		this.timer = timer;
+		setBatching(maxBatchSize, windowMicros);
+	}
+	
+	void setBatching(int maxBatchSize, long windowMicros)
+	{
+		if (maxBatchSize < 1)
+		{
+			throw new IllegalArgumentException("maxBatchSize must be positive");
+		}
+		if (windowMicros < 0)
+		{
+			throw new IllegalArgumentException("windowMicros must be non-negative");
+		}
+		synchronized (batches)
+		{
+			this.maxBatchSize = maxBatchSize;
+			this.windowMicros = windowMicros;
+		}
+	}
+	
+	/**
+	 * Adds a single comparison to the open batch of its key.
+	 *
+	 * @param key      the key of the batch
+	 * @param operands the operands of the comparison
+	 * @return the result of the comparison, completed by the flush action
+	 */
+	CompletableFuture<EncryptedNumber> submit(K key, EncryptedNumber... operands)
+	{
+		CompletableFuture<EncryptedNumber> result = new CompletableFuture<>();
+		Batch<K>                           full   = null;
+		
+		synchronized (batches)
+		{
+			Batch<K> batch = batches.get(key);
+			
+			if (batch == null)
+			{
+				batch = new Batch<>(key);
+				batches.put(key, batch);
+				if (windowMicros > 0)
+				{
+					Batch<K> scheduled = batch;
+					
+					timer.get().schedule(() -> flush(scheduled), windowMicros, TimeUnit.MICROSECONDS);
+				}
+			}
+			batch.operands.addAll(Arrays.asList(operands));
+			batch.results.add(result);
+			if (windowMicros == 0 || batch.results.size() >= maxBatchSize)
+			{
+				batches.remove(key);
+				full = batch;
+			}
+		}
+		if (full != null)
+		{
+			flushAction.accept(full);
+		}
+		return result;
+	}
+	
+	private void flush(Batch<K> batch)
+	{
+		synchronized (batches)
+		{
+			if (batches.get(batch.key) != batch)
+			{
+				// already flushed because it was full
+				return;
+			}
+			batches.remove(batch.key);
+		}
+		flushAction.accept(batch);
+	}
+}
\ No newline at end of file
@@ -2,18 +2,184 @@ package com.tudelft.comparison;
 
 import com.tudelft.paillier.*;
 import com.tudelft.paillier.util.BigIntegerUtil;
+import com.tudelft.paillier.util.ParallelUtil;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
 
 public class Comparator
 {
-	public static final int MAX_BIT_LENGTH = 90;
+	public static final int  MAX_BIT_LENGTH              = 90;
+	public static final int  DEFAULT_ASYNC_BATCH_SIZE    = 64;
+	public static final long DEFAULT_ASYNC_WINDOW_MICROS = 500;
 	
-	private transient Verifier verifier;
+	/**
+	 * The smallest batch of {@link #compareAgainst} for which the threshold is blinded with a fixed-base
+	 * table, building the table costs about as much as ten plain exponentiations and saves about half of
+	 * every one after.
+	 */
+	private static final int FIXED_BASE_MIN_VALUES = 32;
+	
+	private transient VerifierEndpoint    verifier;
+	private transient ForkJoinPool        pool;
+	private transient ComparisonMode      mode;
+	private transient ComparisonCoalescer coalescer;
+	
+	private transient volatile ComparisonCache cache;
 	
 	public Comparator(PaillierPrivateKey sk)
 	{
-		this.verifier = new Verifier(sk);
+		this(sk, ComparisonMode.BOTH_OPERANDS);
+	}
+	
+	/**
+	 * @param sk   the private key of the verifier
+	 * @param mode the way comparisons are blinded and decrypted
+	 */
+	public Comparator(PaillierPrivateKey sk, ComparisonMode mode)
+	{
+		this(sk, ForkJoinPool.commonPool(), mode);
+	}
+	
+	/**
+	 * @param sk   the private key of the verifier
+	 * @param pool the fork-join pool batched comparisons are evaluated on
+	 */
+	public Comparator(PaillierPrivateKey sk, ForkJoinPool pool)
+	{
+		this(sk, pool, ComparisonMode.BOTH_OPERANDS);
+	}
+	
+	/**
+	 * @param sk   the private key of the verifier
+	 * @param pool the fork-join pool batched comparisons are evaluated on
+	 * @param mode the way comparisons are blinded and decrypted
+	 */
+	public Comparator(PaillierPrivateKey sk, ForkJoinPool pool, ComparisonMode mode)
+	{
+		this(new Verifier(sk, pool), pool, mode);
+	}
+	
+	/**
+	 * Compares through a remote verifier, see {@link VerifierServer}.
+	 *
+	 * @param client the connection to the verifier
+	 * @param mode   the way comparisons are blinded and decrypted
+	 */
+	public Comparator(VerifierClient client, ComparisonMode mode)
+	{
+		this(client, ForkJoinPool.commonPool(), mode);
+	}
+	
+	/**
+	 * Compares through a remote verifier, see {@link VerifierServer}.
+	 *
+	 * @param client the connection to the verifier
+	 * @param pool   the fork-join pool batched comparisons are blinded on
+	 * @param mode   the way comparisons are blinded and decrypted
+	 */
+	public Comparator(VerifierClient client, ForkJoinPool pool, ComparisonMode mode)
+	{
+		this((VerifierEndpoint) client, pool, mode);
+	}
+	
+	private Comparator(VerifierEndpoint verifier, ForkJoinPool pool, ComparisonMode mode)
+	{
+		this.verifier = verifier;
+		this.pool = pool;
+		this.mode = mode;
+		this.coalescer = new ComparisonCoalescer(this, DEFAULT_ASYNC_BATCH_SIZE, DEFAULT_ASYNC_WINDOW_MICROS);
+	}
+	
+	public ComparisonMode getMode()
+	{
+		return mode;
+	}
+	
+	/**
+	 * Lets the verifier keep background-refilled pools of obfuscated encryptions of -1, 0 and 1, which
+	 * takes the encryption of the comparison result off the critical path. For a remote verifier, the pools
+	 * are enabled on the {@link VerifierServer}.
+	 *
+	 * @param lowWatermark  the pool size at or below which a pool is refilled
+	 * @param highWatermark the capacity of every pool
+	 * @param threads       the number of worker threads per pool
+	 */
+	public void enableResultPools(int lowWatermark, int highWatermark, int threads)
+	{
+		localVerifier().enableResultPools(lowWatermark, highWatermark, threads);
+	}
+	
+	/**
+	 * Stops the result pools of the verifier, comparison results are encrypted on demand again.
+	 */
+	public void disableResultPools()
+	{
+		localVerifier().disableResultPools();
+	}
+	
+	/**
+	 * @return the number of comparison results the verifier took from its result pools
+	 */
+	public long getResultPoolHits()
+	{
+		return localVerifier().getResultPoolHits();
+	}
+	
+	/**
+	 * @return the number of comparison results the verifier encrypted on demand because a result pool was empty
+	 */
+	public long getResultPoolMisses()
+	{
+		return localVerifier().getResultPoolMisses();
+	}
+	
+	/**
+	 * Caches the encrypted results of {@link #compare}, {@link #compareAll} and {@link #compareAgainst}, and so
+	 * of {@link #compareAsync}, by the exact ciphertexts of the compared values, see {@link ComparisonCache}.
+	 * Replaces the current cache, if any.
+	 *
+	 * @param maxEntries       the maximum number of cached results
+	 * @param maxBytes         the maximum estimated number of bytes kept by the cached results
+	 * @param timeToLiveMillis the time after which a cached result expires
+	 * @return the cache, which keeps the hit and miss statistics
+	 */
+	public ComparisonCache enableCache(int maxEntries, long maxBytes, long timeToLiveMillis)
+	{
+		cache = new ComparisonCache(maxEntries, maxBytes, timeToLiveMillis);
+		return cache;
+	}
+	
+	/**
+	 * Drops the cache, every comparison is evaluated by the verifier again.
+	 */
+	public void disableCache()
+	{
+		cache = null;
+	}
+	
+	/**
+	 * @return the cache of this comparator, null if caching is disabled
+	 */
+	public ComparisonCache getCache()
+	{
+		return cache;
+	}
+	
+	private Verifier localVerifier()
+	{
+		if (!(verifier instanceof Verifier))
+		{
+			throw new UnsupportedOperationException("Result pools of a remote verifier are managed by its VerifierServer");
+		}
+		return (Verifier) verifier;
 	}
 	
 	/**
@@ -25,9 +191,28 @@ public class Comparator
 	 */
 	public EncryptedNumber compare(EncryptedNumber a, EncryptedNumber b, int l)
 	{
-		if (l > MAX_BIT_LENGTH)
+		checkBitLength(l);
+		ComparisonCache cache = this.cache;
+		
+		if (cache == null)
 		{
-			throw new PaillierRuntimeException("Maximum bit length exceeded, max: " + MAX_BIT_LENGTH + ", was: " + l);
+			return evaluate(a, b, l);
+		}
+		EncryptedNumber z = cache.get(a, b, l);
+		
+		if (z == null)
+		{
+			z = evaluate(a, b, l);
+			cache.put(a, b, l, z);
+		}
+		return z;
+	}
+	
+	private EncryptedNumber evaluate(EncryptedNumber a, EncryptedNumber b, int l)
+	{
+		if (mode != ComparisonMode.BOTH_OPERANDS)
+		{
+			return verifier.getZFromDifference(blindDifference(a.subtract(b), l), l);
 		}
 		BigInteger r = calculateR(l);
 		a = a.multiply(r);
@@ -48,6 +233,424 @@ public class Comparator
 		return compare(a, b, MAX_BIT_LENGTH);
 	}
 	
+	/**
+	 * Securely compare many pairs of values encrypted with the Paillier crypto system. The pairs are
+	 * blinded in parallel and handed to the verifier as a single batch, which evaluates them in parallel
+	 * as well. Every pair gets its own random r.
+	 *
+	 * @param a, encrypted
+	 * @param b, encrypted, must have the same size as a
+	 * @param l  the maximum bit length of all encrypted values
+	 * @return for every pair (a[i], b[i]) the encrypted result of the comparison, in input order
+	 */
+	public List<EncryptedNumber> compareAll(List<EncryptedNumber> a, List<EncryptedNumber> b, int l)
+	{
+		checkBitLength(l);
+		if (a.size() != b.size())
+		{
+			throw new IllegalArgumentException("a and b must have the same size, were " + a.size() + " and " + b.size());
+		}
+		return compareCached(a, b, l, (missingA, missingB) -> evaluateAll(missingA, missingB, l));
+	}
+	
+	private List<EncryptedNumber> evaluateAll(List<EncryptedNumber> a, List<EncryptedNumber> b, int l)
+	{
+		if (mode != ComparisonMode.BOTH_OPERANDS)
+		{
+			EncryptedNumber[] d = new EncryptedNumber[a.size()];
+			
+			ParallelUtil.parallelFor(pool, d.length, i -> d[i] = a.get(i).subtract(b.get(i)));
+			
+			return evaluateDifferences(d, l);
+		}
+		EncryptedNumber[] ar = new EncryptedNumber[a.size()];
+		EncryptedNumber[] br = new EncryptedNumber[b.size()];
+		
+		ParallelUtil.parallelFor(pool, ar.length, i ->
+		{
+			BigInteger r = calculateR(l);
+			
+			ar[i] = a.get(i).multiply(r);
+			br[i] = b.get(i).multiply(r);
+		});
+		
+		return verifier.getZAll(ar, br);
+	}
+	
+	/**
+	 * Securely compare many pairs of values encrypted with the Paillier crypto system. If no bit length is
+	 * specified, the maximum bit length is assumed.
+	 *
+	 * @param a, encrypted
+	 * @param b, encrypted, must have the same size as a
+	 */
+	public List<EncryptedNumber> compareAll(List<EncryptedNumber> a, List<EncryptedNumber> b)
+	{
+		return compareAll(a, b, MAX_BIT_LENGTH);
+	}
+	
+	/**
+	 * Securely compare many values encrypted with the Paillier crypto system against one encrypted
+	 * threshold, like {@link #compareAll} with the threshold as every b. In
+	 * the difference modes the threshold is negated only once for the whole batch, so
+	 * every comparison costs a modular multiplication instead of a modular inversion for the subtraction. In
+	 * {@link ComparisonMode#BOTH_OPERANDS} the threshold is still blinded with the own r of every comparison,
+	 * as a shared r would reveal the ratios of the values to the verifier, but the powers of the threshold are
+	 * taken from a {@link FixedBaseTable} built once for the batch, which costs one modular multiplication
+	 * per four bits of r instead of a full exponentiation once the batch holds enough values.
+	 *
+	 * @param values,   encrypted
+	 * @param threshold encrypted
+	 * @param l         the maximum bit length of all encrypted values
+	 * @return for every value the encrypted result of its comparison with the threshold, in input order
+	 */
+	public List<EncryptedNumber> compareAgainst(List<EncryptedNumber> values, EncryptedNumber threshold, int l)
+	{
+		checkBitLength(l);
+		return compareCached(values, Collections.nCopies(values.size(), threshold), l,
+				(missing, thresholds) -> evaluateAgainst(missing, threshold, l));
+	}
+	
+	private List<EncryptedNumber> evaluateAgainst(List<EncryptedNumber> values, EncryptedNumber threshold, int l)
+	{
+		if (mode != ComparisonMode.BOTH_OPERANDS)
+		{
+			EncryptedNumber   negated = threshold.additiveInverse();
+			EncryptedNumber[] d       = new EncryptedNumber[values.size()];
+			
+			ParallelUtil.parallelFor(pool, d.length, i -> d[i] = values.get(i).add(negated));
+			
+			return evaluateDifferences(d, l);
+		}
+		EncryptedNumber[] ar              = new EncryptedNumber[values.size()];
+		EncryptedNumber[] br              = new EncryptedNumber[values.size()];
+		PaillierContext   cxt             = threshold.getContext();
+		FixedBaseTable    thresholdPowers = ar.length < FIXED_BASE_MIN_VALUES ? null
+				: new FixedBaseTable(threshold.getCipherText(), rBitLength(l), cxt.getPublicKey().getModulusSquared());
+		
+		ParallelUtil.parallelFor(pool, ar.length, i ->
+		{
+			BigInteger r = calculateR(l);
+			
+			ar[i] = values.get(i).multiply(r);
+			if (thresholdPowers == null)
+			{
+				br[i] = threshold.multiply(r);
+			}
+			else
+			{
+				// the same encoding as multiply(r), which moves trailing factors of the base into the exponent
+				EncodedNumber encoded = cxt.encode(r);
+				
+				br[i] = new EncryptedNumber(cxt, thresholdPowers.pow(encoded.getValue()),
+						threshold.getExponent() + encoded.getExponent());
+			}
+		});
+		
+		return verifier.getZAll(ar, br);
+	}
+	
+	/**
+	 * Securely compare many values encrypted with the Paillier crypto system against one encrypted
+	 * threshold. If no bit length is specified, the maximum bit length is assumed.
+	 *
+	 * @param values,   encrypted
+	 * @param threshold encrypted
+	 */
+	public List<EncryptedNumber> compareAgainst(List<EncryptedNumber> values, EncryptedNumber threshold)
+	{
+		return compareAgainst(values, threshold, MAX_BIT_LENGTH);
+	}
+	
+	/**
+	 * Asynchronously compare two values encrypted with the Paillier crypto system on the fork-join pool of
+	 * this comparator, see {@link #compareAsync(EncryptedNumber, EncryptedNumber, int, Executor)}.
+	 *
+	 * @param a, encrypted
+	 * @param b, encrypted
+	 * @param l  the maximum bit length of the two encrypted values
+	 * @return the encrypted result of the comparison, once available
+	 */
+	public CompletableFuture<EncryptedNumber> compareAsync(EncryptedNumber a, EncryptedNumber b, int l)
+	{
+		return compareAsync(a, b, l, pool);
+	}
+	
+	/**
+	 * Asynchronously compare two values encrypted with the Paillier crypto system. Comparisons with the same
+	 * bit length and executor that are issued within a short window are coalesced and evaluated with a single
+	 * {@link #compareAll} call on the executor, see {@link #setAsyncBatching(int, long)}.
+	 *
+	 * @param a,       encrypted
+	 * @param b,       encrypted
+	 * @param l        the maximum bit length of the two encrypted values
+	 * @param executor the executor the batch of this comparison is evaluated on
+	 * @return the encrypted result of the comparison, once available
+	 */
+	public CompletableFuture<EncryptedNumber> compareAsync(EncryptedNumber a, EncryptedNumber b, int l, Executor executor)
+	{
+		checkBitLength(l);
+		return coalescer.submit(a, b, l, executor);
+	}
+	
+	/**
+	 * Asynchronously compare two values encrypted with the Paillier crypto system. If no bit length is
+	 * specified, the maximum bit length is assumed.
+	 *
+	 * @param a, encrypted
+	 * @param b, encrypted
+	 */
+	public CompletableFuture<EncryptedNumber> compareAsync(EncryptedNumber a, EncryptedNumber b)
+	{
+		return compareAsync(a, b, MAX_BIT_LENGTH);
+	}
+	
+	/**
+	 * Configures how {@link #compareAsync} coalesces comparisons. A batch is evaluated once it holds
+	 * {@code maxBatchSize} comparisons or once {@code windowMicros} have passed since its first comparison.
+	 *
+	 * @param maxBatchSize the maximum number of comparisons per batch
+	 * @param windowMicros the batching window, 0 to evaluate every comparison at once
+	 */
+	public void setAsyncBatching(int maxBatchSize, long windowMicros)
+	{
+		coalescer.setBatching(maxBatchSize, windowMicros);
+	}
+	
+	/**
+	 * Obliviously orders many pairs of values encrypted with the Paillier crypto system, the compare-exchanges
+	 * of one layer of a sorting network, see {@link #swapDifferencesAll}.
+	 *
+	 * @param a, encrypted
+	 * @param b, encrypted, must have the same length as a
+	 * @param l  the maximum bit length of all encrypted values
+	 * @return for every pair (a[i], b[i]) the encrypted minimum at 2 * i and the encrypted maximum at 2 * i + 1
+	 */
+	EncryptedNumber[] compareExchangeAll(EncryptedNumber[] a, EncryptedNumber[] b, int l)
+	{
+		EncryptedNumber[][] ka = new EncryptedNumber[a.length][];
+		EncryptedNumber[][] kb = new EncryptedNumber[a.length][];
+		
+		for (int i = 0; i < a.length; i++)
+		{
+			ka[i] = new EncryptedNumber[]{a[i]};
+			kb[i] = new EncryptedNumber[]{b[i]};
+		}
+		EncryptedNumber[][] sd     = swapDifferencesAll(ka, kb, l);
+		EncryptedNumber[]   result = new EncryptedNumber[2 * a.length];
+		
+		ParallelUtil.parallelFor(pool, a.length, i ->
+		{
+			result[2 * i] = a[i].subtract(sd[i][0]);
+			result[2 * i + 1] = b[i].add(sd[i][0]);
+		});
+		
+		return result;
+	}
+	
+	/**
+	 * Computes the encrypted swap differences of many pairs of tuples encrypted with the Paillier crypto
+	 * system. The tuples of a pair are ordered by their first elements, the others are carried along. For every
+	 * pair the verifier learns the sign of the blinded difference [r * (a[0] - b[0]) + r'] and gets every
+	 * difference masked as [(a[j] - b[j]) + rho], it returns [s] once and [s * (a[j] - b[j] + rho)] for every
+	 * element, where s is 1 if a[0] &gt; b[0]. The comparator removes the masks to get [s * (a[j] - b[j])], so that a[j] - s * (a[j] -
+	 * b[j]) belongs to the minimum and b[j] + s * (a[j] - b[j]) to the maximum. The difference is blinded
+	 * regardless of the mode of this comparator.
+	 *
+	 * @param a, encrypted tuples
+	 * @param b, encrypted tuples, must have the same length as a, all tuples must have the same length
+	 * @param l  the maximum bit length of all encrypted values
+	 * @return for every pair (a[i], b[i]) the encrypted swap differences [s * (a[i][j] - b[i][j])]
+	 */
+	EncryptedNumber[][] swapDifferencesAll(EncryptedNumber[][] a, EncryptedNumber[][] b, int l)
+	{
+		checkBitLength(l);
+		if (a.length == 0)
+		{
+			return new EncryptedNumber[0][];
+		}
+		int width = a[0].length;
+		
+		for (int i = 0; i < a.length; i++)
+		{
+			if (width == 0 || a[i].length != width || b[i].length != width)
+			{
+				throw new IllegalArgumentException("All tuples must have the same, non-zero length, tuple " + i + " has "
+				                                   + a[i].length + " and " + b[i].length + " elements, expected " + width);
+			}
+		}
+		EncryptedNumber[] dr  = new EncryptedNumber[a.length];
+		EncryptedNumber[] mr  = new EncryptedNumber[width * a.length];
+		BigInteger[]      rho = new BigInteger[mr.length];
+		
+		ParallelUtil.parallelFor(pool, a.length, i ->
+		{
+			for (int j = 0; j < width; j++)
+			{
+				EncryptedNumber d = a[i][j].subtract(b[i][j]);
+				int             k = width * i + j;
+				
+				if (j == 0)
+				{
+					dr[i] = blindDifference(d, l);
+				}
+				rho[k] = calculateR(l);
+				mr[k] = d.add(rho[k]);
+			}
+		});
+		EncryptedNumber[]   swap   = verifier.getSwapAll(dr, mr, width, l);
+		EncryptedNumber[][] result = new EncryptedNumber[a.length][];
+		
+		ParallelUtil.parallelFor(pool, a.length, i ->
+		{
+			EncryptedNumber s = swap[(1 + width) * i];
+			
+			result[i] = new EncryptedNumber[width];
+			for (int j = 0; j < width; j++)
+			{
+				result[i][j] = swap[(1 + width) * i + 1 + j].add(s.multiply(rho[width * i + j].negate()));
+			}
+		});
+		
+		return result;
+	}
+	
+	/**
+	 * Looks up the comparisons of the pairs (a[i], b[i]) in the cache, if enabled, and evaluates only the
+	 * pairs that are not cached.
+	 */
+	private List<EncryptedNumber> compareCached(List<EncryptedNumber> a, List<EncryptedNumber> b, int l,
+	                                            BiFunction<List<EncryptedNumber>, List<EncryptedNumber>, List<EncryptedNumber>> evaluate)
+	{
+		ComparisonCache cache = this.cache;
+		
+		if (cache == null)
+		{
+			return evaluate.apply(a, b);
+		}
+		EncryptedNumber[] results = new EncryptedNumber[a.size()];
+		
+		ParallelUtil.parallelFor(pool, results.length, i -> results[i] = cache.get(a.get(i), b.get(i), l));
+		
+		List<Integer>         missing  = new ArrayList<>();
+		List<EncryptedNumber> missingA = new ArrayList<>();
+		List<EncryptedNumber> missingB = new ArrayList<>();
+		
+		for (int i = 0; i < results.length; i++)
+		{
+			if (results[i] == null)
+			{
+				missing.add(i);
+				missingA.add(a.get(i));
+				missingB.add(b.get(i));
+			}
+		}
+		if (!missing.isEmpty())
+		{
+			List<EncryptedNumber> evaluated = evaluate.apply(missingA, missingB);
+			
+			for (int i = 0; i < missing.size(); i++)
+			{
+				results[missing.get(i)] = evaluated.get(i);
+				cache.put(missingA.get(i), missingB.get(i), l, evaluated.get(i));
+			}
+		}
+		return Arrays.asList(results);
+	}
+	
+	private void checkBitLength(int l)
+	{
+		if (l > MAX_BIT_LENGTH)
+		{
+			throw new PaillierRuntimeException("Maximum bit length exceeded, max: " + MAX_BIT_LENGTH + ", was: " + l);
+		}
+	}
+	
+	/**
+	 * Evaluates the signs of encrypted differences a - b, blinded one by one, or blinded and packed in
+	 * {@link ComparisonMode#PACKED_DIFFERENCES} if more than one difference fits a ciphertext.
+	 *
+	 * @param d the encrypted differences, overwritten by their blinded differences
+	 * @param l the maximum bit length of all compared values
+	 */
+	private List<EncryptedNumber> evaluateDifferences(EncryptedNumber[] d, int l)
+	{
+		int slots = d.length == 0 ? 0 : PackedDifferences.slots(d[0].getContext(), l);
+		
+		if (mode == ComparisonMode.PACKED_DIFFERENCES && slots > 1 && d.length > 1)
+		{
+			return verifier.getZFromPackedDifferencesAll(packDifferences(d, slots, l), d.length, l);
+		}
+		ParallelUtil.parallelFor(pool, d.length, i -> d[i] = blindDifference(d[i], l));
+		
+		return verifier.getZFromDifferenceAll(d, l);
+	}
+	
+	/**
+	 * Blinds encrypted differences like {@link #blindDifference} and packs them, see {@link PackedDifferences}.
+	 * The differences are blinded in parallel, then every ciphertext is assembled from its highest slot down,
+	 * shifting by one slot per difference, and the offsets of all its slots are added at once.
+	 *
+	 * @param d     the encrypted differences, overwritten by [r * (a - b)]
+	 * @param slots the number of differences per ciphertext
+	 * @param l     the maximum bit length of all compared values
+	 */
+	private EncryptedNumber[] packDifferences(EncryptedNumber[] d, int slots, int l)
+	{
+		BigInteger        shift  = BigInteger.ONE.shiftLeft(PackedDifferences.slotBits(l));
+		EncryptedNumber[] packed = new EncryptedNumber[PackedDifferences.ciphertexts(d[0].getContext(), l, d.length)];
+		
+		ParallelUtil.parallelFor(pool, d.length, i -> d[i] = d[i].multiply(blindingFactor(l)));
+		ParallelUtil.parallelFor(pool, packed.length, p ->
+		{
+			int             from    = p * slots;
+			EncryptedNumber sum     = null;
+			BigInteger      offsets = BigInteger.ZERO;
+			
+			for (int i = Math.min(d.length, from + slots) - 1; i >= from; i--)
+			{
+				sum = sum == null ? d[i] : sum.multiply(shift).add(d[i]);
+				offsets = offsets.shiftLeft(PackedDifferences.slotBits(l)).add(blindingOffset(l));
+			}
+			packed[p] = sum.add(offsets);
+		});
+		
+		return packed;
+	}
+	
+	/**
+	 * Computes the blinded difference [r * (a - b) + r'] for {@link ComparisonMode#BLINDED_DIFFERENCE}.
+	 * r has exactly 80 + l + 1 bits and |r'| &lt; 2<sup>79 + l</sup>, so that |r * (a - b) + r'| is
+	 * smaller than 2<sup>79 + l</sup> if and only if a = b.
+	 *
+	 * @param difference the encrypted difference a - b
+	 * @param l          the maximum bit length of the two encrypted values
+	 */
+	private EncryptedNumber blindDifference(EncryptedNumber difference, int l)
+	{
+		return difference.multiply(blindingFactor(l)).add(blindingOffset(l));
+	}
+	
+	/**
+	 * @param l the maximum bit length of the compared values
+	 * @return the r of a blinded difference, random int of exactly 80 + l + 1 bits
+	 */
+	private BigInteger blindingFactor(int l)
+	{
+		return calculateR(l).setBit(80 + l);
+	}
+	
+	/**
+	 * @param l the maximum bit length of the compared values
+	 * @return the r' of a blinded difference, random int smaller than 2<sup>79 + l</sup> in magnitude
+	 */
+	private BigInteger blindingOffset(int l)
+	{
+		BigInteger offset = new BigInteger(79 + l, BigIntegerUtil.random);
+		
+		return BigIntegerUtil.random.nextBoolean() ? offset.negate() : offset;
+	}
+	
 	/**
 	 * Calculate the r-component in the Paillier comparison scheme.
 	 *
@@ -56,6 +659,11 @@ public class Comparator
 	 */
 	private BigInteger calculateR(int l)
 	{
-		return new BigInteger(80 + l + 1, BigIntegerUtil.random); //r = random int of 80 + l + 1 bits
+		return new BigInteger(rBitLength(l), BigIntegerUtil.random); //r = random int of 80 + l + 1 bits
+	}
+	
+	private static int rBitLength(int l)
+	{
+		return 80 + l + 1;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,262 @@
+package com.tudelft.comparison;
+
+import com.tudelft.paillier.EncryptedNumber;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of encrypted comparison results of a {@link Comparator}, keyed by the exact ciphertexts of
+ * the compared values and the bit length, see {@link Comparator#enableCache(int, long, long)}. Comparing the
+ * same two ciphertexts again costs a single obfuscation instead of the blinding, two decryptions and an
+ * encryption of the protocol: every hit returns a freshly obfuscated copy of the cached result, so that the
+ * results of repeated comparisons cannot be linked.
+ *
+ * The least recently used results are evicted once the cache holds more than the maximum number of
+ * results or more than the maximum number of bytes, and results expire once they are older than the time to
+ * live. The size of a result is estimated from the ciphertexts it keeps: the two compared values and the
+ * result.
+ */
+public final class ComparisonCache
+{
+	private static final int ENTRY_OVERHEAD = 160;
+	
+	/**
+	 * The compared ciphertexts, their exponents and the bit length of a comparison. The ciphertext alone does not
+	 * identify a value: the unobfuscated encryptions of, e.g., 16 and 1 share a ciphertext and differ only in the
+	 * exponent.
+	 */
+	private static final class Key
+	{
+		private final EncryptedNumber a;
+		private final EncryptedNumber b;
+		private final int             l;
+		
+		private Key(EncryptedNumber a, EncryptedNumber b, int l)
+		{
+			this.a = a;
+			this.b = b;
+			this.l = l;
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			int hash = a.hashCode();
+			
+			hash = hash * 31 + a.getExponent();
+			hash = hash * 31 + b.hashCode();
+			hash = hash * 31 + b.getExponent();
+			
+			return hash * 31 + l;
+		}
+		
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Key))
+			{
+				return false;
+			}
+			Key key = (Key) o;
+			
+			return l == key.l
+			       && a.getExponent() == key.a.getExponent() && b.getExponent() == key.b.getExponent()
+			       && a.equals(key.a) && b.equals(key.b);
+		}
+	}
+	
+	/**
+	 * A cached result, with the time it was cached and its estimated size.
+	 */
+	private static final class Entry
+	{
+		private final EncryptedNumber result;
+		private final long            created;
+		private final long            bytes;
+		
+		private Entry(EncryptedNumber result, long created, long bytes)
+		{
+			this.result = result;
+			this.created = created;
+			this.bytes = bytes;
+		}
+	}
+	
+	private final int             maxEntries;
+	private final long            maxBytes;
+	private final long            timeToLiveNanos;
+	private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	
+	private long bytes;
+	private long hits;
+	private long misses;
+	private long evictions;
+	
+	ComparisonCache(int maxEntries, long maxBytes, long timeToLiveMillis)
+	{
+		if (maxEntries < 1)
+		{
+			throw new IllegalArgumentException("maxEntries must be positive, was " + maxEntries);
+		}
+		if (maxBytes < 1)
+		{
+			throw new IllegalArgumentException("maxBytes must be positive, was " + maxBytes);
+		}
+		if (timeToLiveMillis < 1)
+		{
+			throw new IllegalArgumentException("timeToLiveMillis must be positive, was " + timeToLiveMillis);
+		}
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+		this.timeToLiveNanos = timeToLiveMillis * 1000000;
+	}
+	
+	/**
+	 * @return a freshly obfuscated copy of the cached result of comparing a with b, null if there is none
+	 */
+	EncryptedNumber get(EncryptedNumber a, EncryptedNumber b, int l)
+	{
+		Key   key = new Key(a, b, l);
+		Entry entry;
+		
+		synchronized (this)
+		{
+			entry = entries.get(key);
+			if (entry != null && System.nanoTime() - entry.created > timeToLiveNanos)
+			{
+				remove(key, entry);
+				entry = null;
+			}
+			if (entry == null)
+			{
+				misses++;
+				return null;
+			}
+			hits++;
+		}
+		return entry.result.obfuscate();
+	}
+	
+	/**
+	 * Caches the result of comparing a with b, evicting the least recently used results if the cache is full.
+	 */
+	void put(EncryptedNumber a, EncryptedNumber b, int l, EncryptedNumber result)
+	{
+		Key   key   = new Key(a, b, l);
+		Entry entry = new Entry(result, System.nanoTime(), estimateBytes(a));
+		
+		synchronized (this)
+		{
+			Entry previous = entries.put(key, entry);
+			
+			if (previous != null)
+			{
+				bytes -= previous.bytes;
+			}
+			bytes += entry.bytes;
+			
+			Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+			
+			while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext())
+			{
+				Map.Entry<Key, Entry> evicted = eldest.next();
+				
+				eldest.remove();
+				bytes -= evicted.getValue().bytes;
+				evictions++;
+			}
+		}
+	}
+	
+	/**
+	 * Removes all cached results. The statistics are kept.
+	 */
+	public synchronized void clear()
+	{
+		entries.clear();
+		bytes = 0;
+	}
+	
+	/**
+	 * @return the number of cached results, including expired ones that were not looked up since
+	 */
+	public synchronized int getSize()
+	{
+		return entries.size();
+	}
+	
+	/**
+	 * @return the estimated number of bytes kept by the cached results
+	 */
+	public synchronized long getBytes()
+	{
+		return bytes;
+	}
+	
+	/**
+	 * @return the number of comparisons answered from the cache
+	 */
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+	
+	/**
+	 * @return the number of comparisons that were not cached or had expired
+	 */
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+	
+	/**
+	 * @return the number of results evicted because the cache was full
+	 */
+	public synchronized long getEvictions()
+	{
+		return evictions;
+	}
+	
+	/**
+	 * @return the share of comparisons answered from the cache, 0 if there were none
+	 */
+	public synchronized double getHitRate()
+	{
+		long lookups = hits + misses;
+		
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+	
+	public int getMaxEntries()
+	{
+		return maxEntries;
+	}
+	
+	public long getMaxBytes()
+	{
+		return maxBytes;
+	}
+	
+	public long getTimeToLiveMillis()
+	{
+		return timeToLiveNanos / 1000000;
+	}
+	
+	private void remove(Key key, Entry entry)
+	{
+		entries.remove(key);
+		bytes -= entry.bytes;
+	}
+	
+	/**
+	 * Estimates the size of a cached result as three ciphertexts of the size of the modulus squared.
+	 */
+	private static long estimateBytes(EncryptedNumber a)
+	{
+		long ciphertextBytes = (a.getContext().getPublicKey().getModulusSquared().bitLength() + 7) / 8;
+		
+		return 3 * ciphertextBytes + ENTRY_OVERHEAD;
+	}
+}
\ No newline at end of file
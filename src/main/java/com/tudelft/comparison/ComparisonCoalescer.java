@@ -0,0 +1,126 @@
+package com.tudelft.comparison;
+
+import com.tudelft.paillier.EncryptedNumber;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Collects the comparisons of {@link Comparator#compareAsync} into batches per executor and bit length, and
+ * evaluates every batch with a single {@link Comparator#compareAll} call on its executor, see {@link Batcher}
+ * for when a batch is evaluated.
+ */
+final class ComparisonCoalescer
+{
+	private static ScheduledExecutorService timer;
+	
+	/**
+	 * The executor and bit length of comparisons which are evaluated together.
+	 */
+	private static final class Target
+	{
+		private final Executor executor;
+		private final int      l;
+		
+		private Target(Executor executor, int l)
+		{
+			this.executor = executor;
+			this.l = l;
+		}
+		
+		@Override
+		public int hashCode()
+		{
+			return executor.hashCode() * 31 + l;
+		}
+		
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Target))
+			{
+				return false;
+			}
+			Target target = (Target) o;
+			
+			return l == target.l && executor.equals(target.executor);
+		}
+	}
+	
+	private final Comparator      comparator;
+	private final Batcher<Target> batcher;
+	
+	ComparisonCoalescer(Comparator comparator, int maxBatchSize, long windowMicros)
+	{
+		this.comparator = comparator;
+		this.batcher = new Batcher<>(this::execute, ComparisonCoalescer::timer, maxBatchSize, windowMicros);
+	}
+	
+	void setBatching(int maxBatchSize, long windowMicros)
+	{
+		batcher.setBatching(maxBatchSize, windowMicros);
+	}
+	
+	CompletableFuture<EncryptedNumber> submit(EncryptedNumber a, EncryptedNumber b, int l, Executor executor)
+	{
+		return batcher.submit(new Target(executor, l), a, b);
+	}
+	
+	private void execute(Batcher.Batch<Target> batch)
+	{
+		try
+		{
+			batch.key.executor.execute(() -> evaluate(batch));
+		}
+		catch (RejectedExecutionException e)
+		{
+			batch.fail(e);
+		}
+	}
+	
+	private void evaluate(Batcher.Batch<Target> batch)
+	{
+		List<EncryptedNumber> a = new ArrayList<>();
+		List<EncryptedNumber> b = new ArrayList<>();
+		List<EncryptedNumber> z;
+		
+		for (int i = 0; i < batch.operands.size(); i += 2)
+		{
+			a.add(batch.operands.get(i));
+			b.add(batch.operands.get(i + 1));
+		}
+		try
+		{
+			z = comparator.compareAll(a, b, batch.key.l);
+		}
+		catch (RuntimeException e)
+		{
+			batch.fail(e);
+			return;
+		}
+		for (int i = 0; i < z.size(); i++)
+		{
+			batch.results.get(i).complete(z.get(i));
+		}
+	}
+	
+	private static synchronized ScheduledExecutorService timer()
+	{
+		if (timer == null)
+		{
+			timer = Executors.newSingleThreadScheduledExecutor(runnable ->
+			{
+				Thread thread = new Thread(runnable, "comparator-batch-window");
+				
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		return timer;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.tudelft.comparison;
+
+/**
+ * The ways a {@link Comparator} can hand a blinded comparison to the {@link Verifier}.
+ */
+public enum ComparisonMode
+{
+	/**
+	 * Both operands are blinded with the same random r and decrypted separately: [a * r] and [b * r].
+	 * Costs two decryptions per comparison.
+	 */
+	BOTH_OPERANDS,
+	
+	/**
+	 * Only the blinded difference [r * (a - b) + r'] is decrypted, where r has its top bit set and the
+	 * offset r' is smaller than r / 2 in magnitude. The verifier reads off the sign, and equality from
+	 * the magnitude of the difference. Costs one decryption per comparison.
+	 */
+	BLINDED_DIFFERENCE,
+	
+	/**
+	 * Like {@link #BLINDED_DIFFERENCE}, but the blinded differences of a batch are packed into as few
+	 * ciphertexts as fit, see {@link PackedDifferences}, and the verifier reads all signs of a ciphertext
+	 * from a single decryption. With a 2048 bit key, 19 comparisons of 10 bit values or 7 of 90 bit values
+	 * share a decryption. Single comparisons are evaluated as in {@link #BLINDED_DIFFERENCE}.
+	 */
+	PACKED_DIFFERENCES
+}
\ No newline at end of file
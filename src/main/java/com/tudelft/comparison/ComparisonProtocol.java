@@ -0,0 +1,144 @@
+package com.tudelft.comparison;
+
+import com.tudelft.paillier.EncryptedNumber;
+import com.tudelft.paillier.PaillierContext;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+
+/**
+ * The binary framing spoken between a {@link VerifierClient} and a {@link VerifierServer}. All integers
+ * are big-endian.
+ *
+ * <ul>
+ *   <li>Handshake, server to client: magic, version, modulus length, modulus. The client answers with magic
+ *   and version, either side drops the connection if the other speaks a different version.</li>
+ *   <li>Request: id, operation, l, count, for swaps the tuple width, followed by count entries of one (blinded
+ *   difference) or two (both operands) ciphertexts, of one blinded difference and tuple width masked
+ *   differences (swap), or by the ciphertexts that count packed differences take.</li>
+ *   <li>Response: id, status, followed by the number of results and the result ciphertexts, one (comparisons)
+ *   or one plus tuple width (swap) per entry, or by an error message.</li>
+ * </ul>
+ *
+ * The operation is one of the comparison modes, or {@link #OP_SWAP} for a layer of a sorting network.
+ *
+ * A ciphertext is its exponent followed by its value as an unsigned number of a fixed width, the byte
+ * length of the modulus squared. Responses may arrive in any order, the id ties them to their request.
+ */
+final class ComparisonProtocol
+{
+	static final int  MAGIC        = 0x50434d50;
+	/**
+	 * Version 2 added {@link #OP_SWAP}, version 3 {@link #OP_PACKED_DIFFERENCES}, version 4 sends one blinded
+	 * difference per tuple of {@link #OP_SWAP}.
+	 */
+	static final byte VERSION      = 4;
+	static final byte STATUS_OK    = 0;
+	static final byte STATUS_ERROR = 1;
+	
+	static final int OP_BOTH_OPERANDS      = 0;
+	static final int OP_BLINDED_DIFFERENCE = 1;
+	static final int OP_SWAP               = 2;
+	static final int OP_PACKED_DIFFERENCES = 3;
+	
+	/**
+	 * The maximum number of comparisons in a single frame, and of masked differences in a frame of swaps.
+	 */
+	static final int MAX_FRAME_SIZE = 1 << 16;
+	
+	/**
+	 * The maximum number of frames of a connection a server evaluates at once.
+	 */
+	static final int MAX_FRAMES_IN_FLIGHT = 32;
+	
+	private ComparisonProtocol()
+	{
+	}
+	
+	/**
+	 * @return the number of bytes of a ciphertext under the context's public key
+	 */
+	static int ciphertextWidth(PaillierContext cxt)
+	{
+		return (cxt.getPublicKey().getModulusSquared().bitLength() + 7) / 8;
+	}
+	
+	/**
+	 * @return the number of ciphertexts per entry of a request, except for packed differences
+	 */
+	static int arity(int operation, int tupleWidth)
+	{
+		if (operation == OP_SWAP)
+		{
+			return 1 + tupleWidth;
+		}
+		return operation == OP_BLINDED_DIFFERENCE ? 1 : 2;
+	}
+	
+	/**
+	 * @return the number of ciphertexts of a request with count entries
+	 */
+	static int operands(int operation, int count, int tupleWidth, PaillierContext cxt, int l)
+	{
+		if (operation == OP_PACKED_DIFFERENCES)
+		{
+			return PackedDifferences.ciphertexts(cxt, l, count);
+		}
+		return count * arity(operation, tupleWidth);
+	}
+	
+	/**
+	 * @return the number of result ciphertexts per entry of a request
+	 */
+	static int resultArity(int operation, int tupleWidth)
+	{
+		return operation == OP_SWAP ? 1 + tupleWidth : 1;
+	}
+	
+	static int readOperation(DataInputStream in) throws IOException
+	{
+		int operation = in.readUnsignedByte();
+		
+		if (operation > OP_PACKED_DIFFERENCES)
+		{
+			throw new IOException("Unknown operation: " + operation);
+		}
+		return operation;
+	}
+	
+	static void writeCiphertext(DataOutputStream out, BigInteger ciphertext, int exponent, int width) throws IOException
+	{
+		byte[] bytes  = ciphertext.toByteArray();
+		int    offset = bytes.length > width ? bytes.length - width : 0;
+		
+		out.writeInt(exponent);
+		for (int i = bytes.length - offset; i < width; i++)
+		{
+			out.writeByte(0);
+		}
+		out.write(bytes, offset, bytes.length - offset);
+	}
+	
+	/**
+	 * Reads a ciphertext into the given context.
+	 *
+	 * @throws IOException if the ciphertext is not valid under the context's public key
+	 */
+	static EncryptedNumber readCiphertext(DataInputStream in, PaillierContext cxt, int width, boolean isSafe) throws IOException
+	{
+		int    exponent = in.readInt();
+		byte[] bytes    = new byte[width];
+		
+		in.readFully(bytes);
+		try
+		{
+			return new EncryptedNumber(cxt, new BigInteger(1, bytes), exponent, isSafe);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IOException("Invalid ciphertext", e);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,293 @@
+package com.tudelft.comparison;
+
+import com.tudelft.paillier.EncryptedNumber;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sorts values encrypted with the Paillier crypto system with a data-oblivious sorting network, Batcher's
+ * odd-even merge sort. The compare-exchanges of a sorting network do not depend on the data, so all
+ * compare-exchanges of a layer are independent and are evaluated in one round with the verifier, see
+ * {@link Comparator#compareExchangeAll}. Sorting n values takes O(log<sup>2</sup> n) rounds. The values are
+ * never decrypted, the sorted values are fresh encryptions which cannot be linked to the input.
+ *
+ * Examples:
+ * <ul>
+ *   <li>
+ *     <p>To sort encrypted values of at most 32 bits from large to small:</p>
+ *     <p><code>EncryptedSorter sorter = new EncryptedSorter(new Comparator(privateKey));</code></p>
+ *     <p><code>List&lt;EncryptedNumber&gt; sorted = sorter.sort(values, 32, true).getValues();</code></p>
+ *   </li>
+ * </ul>
+ */
+public class EncryptedSorter
+{
+	/**
+	 * The sorted values of a sort, with the number of protocol rounds and compare-exchanges it took.
+	 */
+	public static final class Result
+	{
+		private final List<EncryptedNumber> values;
+		private final int                   rounds;
+		private final long                  comparisons;
+		
+		private Result(List<EncryptedNumber> values, int rounds, long comparisons)
+		{
+			this.values = Collections.unmodifiableList(values);
+			this.rounds = rounds;
+			this.comparisons = comparisons;
+		}
+		
+		/**
+		 * @return the sorted values
+		 */
+		public List<EncryptedNumber> getValues()
+		{
+			return values;
+		}
+		
+		/**
+		 * @return the number of rounds with the verifier, one per layer of the sorting network
+		 */
+		public int getRounds()
+		{
+			return rounds;
+		}
+		
+		/**
+		 * @return the number of compare-exchanges
+		 */
+		public long getComparisons()
+		{
+			return comparisons;
+		}
+	}
+	
+	private final Comparator comparator;
+	
+	/**
+	 * @param comparator the comparator whose verifier evaluates the compare-exchanges
+	 */
+	public EncryptedSorter(Comparator comparator)
+	{
+		this.comparator = comparator;
+	}
+	
+	/**
+	 * Sorts values encrypted with the Paillier crypto system from small to large.
+	 *
+	 * @param values, encrypted
+	 * @param l       the maximum bit length of all encrypted values
+	 */
+	public Result sort(List<EncryptedNumber> values, int l)
+	{
+		return sort(values, l, false);
+	}
+	
+	/**
+	 * Sorts values encrypted with the Paillier crypto system.
+	 *
+	 * @param values,    encrypted
+	 * @param l          the maximum bit length of all encrypted values
+	 * @param descending whether to sort from large to small
+	 */
+	public Result sort(List<EncryptedNumber> values, int l, boolean descending)
+	{
+		EncryptedNumber[] a     = values.toArray(new EncryptedNumber[values.size()]);
+		Network           sorts = new Network();
+		
+		sorts.addSort(0, a.length);
+		Result result = run(a, l, sorts);
+		
+		if (descending)
+		{
+			List<EncryptedNumber> reversed = new ArrayList<>(result.values);
+			
+			Collections.reverse(reversed);
+			return new Result(reversed, result.rounds, result.comparisons);
+		}
+		return result;
+	}
+	
+	/**
+	 * Selects the k largest values encrypted with the Paillier crypto system. The values are split into chunks
+	 * of k, which are sorted at once. Pairs of sorted chunks are then merged into the k largest values of both,
+	 * by taking the larger of the i-th smallest of one chunk and the i-th largest of the other, which gives a
+	 * bitonic sequence that is sorted by a single bitonic merge. This takes O(log<sup>2</sup> k +
+	 * log(n / k) log k) rounds instead of the O(log<sup>2</sup> n) rounds of a full sort.
+	 *
+	 * @param values, encrypted
+	 * @param k       the number of values to select
+	 * @param l       the maximum bit length of all encrypted values
+	 * @return the min(k, n) largest values, from large to small
+	 */
+	public Result topK(List<EncryptedNumber> values, int k, int l)
+	{
+		if (k < 1)
+		{
+			throw new IllegalArgumentException("k must be positive, was " + k);
+		}
+		if (values.size() <= k)
+		{
+			return sort(values, l, true);
+		}
+		EncryptedNumber[] a           = values.toArray(new EncryptedNumber[values.size()]);
+		List<Integer>     chunks      = new ArrayList<>();
+		Network           sorts       = new Network();
+		int               rounds      = 0;
+		long              comparisons = 0;
+		
+		for (int offset = 0; offset < a.length; offset += k)
+		{
+			chunks.add(offset);
+			sorts.addSort(offset, Math.min(k, a.length - offset));
+		}
+		Result result = run(a, l, sorts);
+		
+		rounds += result.rounds;
+		comparisons += result.comparisons;
+		while (chunks.size() > 1)
+		{
+			List<Integer> merged = new ArrayList<>();
+			Network       merges = new Network();
+			
+			for (int c = 0; c + 1 < chunks.size(); c += 2)
+			{
+				int left  = chunks.get(c);
+				int right = chunks.get(c + 1);
+				
+				merges.addMerge(left, right, Math.min(k, a.length - right), k);
+				merged.add(left);
+			}
+			if (chunks.size() % 2 == 1)
+			{
+				merged.add(chunks.get(chunks.size() - 1));
+			}
+			result = run(a, l, merges);
+			rounds += result.rounds;
+			comparisons += result.comparisons;
+			chunks = merged;
+		}
+		List<EncryptedNumber> top = new ArrayList<>(Arrays.asList(a).subList(0, k));
+		
+		Collections.reverse(top);
+		return new Result(top, rounds, comparisons);
+	}
+	
+	/**
+	 * Evaluates the layers of a network in place, one round per layer.
+	 */
+	private Result run(EncryptedNumber[] values, int l, Network network)
+	{
+		long comparisons = 0;
+		
+		for (List<int[]> layer : network.layers)
+		{
+			EncryptedNumber[] a = new EncryptedNumber[layer.size()];
+			EncryptedNumber[] b = new EncryptedNumber[layer.size()];
+			
+			for (int i = 0; i < a.length; i++)
+			{
+				a[i] = values[layer.get(i)[0]];
+				b[i] = values[layer.get(i)[1]];
+			}
+			EncryptedNumber[] exchanged = comparator.compareExchangeAll(a, b, l);
+			
+			for (int i = 0; i < a.length; i++)
+			{
+				values[layer.get(i)[0]] = exchanged[2 * i];
+				values[layer.get(i)[1]] = exchanged[2 * i + 1];
+			}
+			comparisons += a.length;
+		}
+		
+		return new Result(Arrays.asList(values), network.layers.size(), comparisons);
+	}
+	
+	/**
+	 * The layers of compare-exchanges of independent networks, which are evaluated side by side. A
+	 * compare-exchange (i, j) moves the minimum to i and the maximum to j.
+	 */
+	private static final class Network
+	{
+		private final List<List<int[]>> layers = new ArrayList<>();
+		
+		/**
+		 * Adds an odd-even merge sort of the n values starting at offset. The network is built for the next
+		 * power of two, the missing values are taken to be infinitely large, so that every compare-exchange
+		 * with one of them can be left out.
+		 */
+		private void addSort(int offset, int n)
+		{
+			int size  = Integer.highestOneBit(Math.max(1, n - 1)) << 1;
+			int layer = 0;
+			
+			for (int p = 1; p < size; p <<= 1)
+			{
+				for (int k = p; k >= 1; k >>= 1)
+				{
+					List<int[]> exchanges = new ArrayList<>();
+					
+					for (int j = k % p; j + k < n; j += 2 * k)
+					{
+						for (int i = 0; i < k && i + j + k < n; i++)
+						{
+							if ((i + j) / (2 * p) == (i + j + k) / (2 * p))
+							{
+								exchanges.add(new int[]{offset + i + j, offset + i + j + k});
+							}
+						}
+					}
+					if (!exchanges.isEmpty())
+					{
+						add(layer++, exchanges);
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Adds a merge of the k sorted values starting at left with the m &lt;= k sorted values starting at
+		 * right, which leaves the k largest of both sorted at left. The first layer moves the larger of left[i]
+		 * and right[m - 1 - i] to left[i], which makes left bitonic, the others are a bitonic merge.
+		 */
+		private void addMerge(int left, int right, int m, int k)
+		{
+			List<int[]> exchanges = new ArrayList<>();
+			int         layer     = 0;
+			
+			for (int i = 0; i < m; i++)
+			{
+				exchanges.add(new int[]{right + m - 1 - i, left + i});
+			}
+			add(layer++, exchanges);
+			for (int d = Integer.highestOneBit(Math.max(1, k - 1)); d >= 1; d >>= 1)
+			{
+				exchanges = new ArrayList<>();
+				for (int i = 0; i + d < k; i++)
+				{
+					if ((i & d) == 0)
+					{
+						exchanges.add(new int[]{left + i, left + i + d});
+					}
+				}
+				if (!exchanges.isEmpty())
+				{
+					add(layer++, exchanges);
+				}
+			}
+		}
+		
+		private void add(int layer, List<int[]> exchanges)
+		{
+			if (layer == layers.size())
+			{
+				layers.add(new ArrayList<>());
+			}
+			layers.get(layer).addAll(exchanges);
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,167 @@
+package com.tudelft.comparison;
+
+import com.tudelft.paillier.EncryptedNumber;
+import com.tudelft.paillier.PaillierContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the minimum or maximum of values encrypted with the Paillier crypto system, and its index, with a
+ * tournament tree. All matches of a level of the tree are independent and are evaluated in one round with
+ * the verifier, see {@link Comparator#swapDifferencesAll}, so n values take ceil(log<sub>2</sub> n) rounds
+ * and n - 1 comparisons, instead of the n - 1 rounds of comparing one value after the other. The index of
+ * the winner is carried along encrypted, neither the values nor the index are ever decrypted.
+ *
+ * Examples:
+ * <ul>
+ *   <li>
+ *     <p>To find the largest of encrypted values of at most 32 bits and where it is:</p>
+ *     <p><code>EncryptedTournament.Result max = new EncryptedTournament(comparator).max(values, 32);</code></p>
+ *     <p><code>EncryptedNumber value = max.getValue(), index = max.getIndex();</code></p>
+ *   </li>
+ * </ul>
+ */
+public class EncryptedTournament
+{
+	/**
+	 * The winner of a tournament, with the number of protocol rounds and comparisons it took.
+	 */
+	public static final class Result
+	{
+		private final EncryptedNumber value;
+		private final EncryptedNumber index;
+		private final int             rounds;
+		private final long            comparisons;
+		
+		private Result(EncryptedNumber value, EncryptedNumber index, int rounds, long comparisons)
+		{
+			this.value = value;
+			this.index = index;
+			this.rounds = rounds;
+			this.comparisons = comparisons;
+		}
+		
+		/**
+		 * @return the encrypted minimum or maximum
+		 */
+		public EncryptedNumber getValue()
+		{
+			return value;
+		}
+		
+		/**
+		 * @return the encrypted index of the minimum or maximum, the smallest one if it occurs more than once
+		 */
+		public EncryptedNumber getIndex()
+		{
+			return index;
+		}
+		
+		/**
+		 * @return the number of rounds with the verifier, one per level of the tree
+		 */
+		public int getRounds()
+		{
+			return rounds;
+		}
+		
+		/**
+		 * @return the number of comparisons
+		 */
+		public long getComparisons()
+		{
+			return comparisons;
+		}
+	}
+	
+	private final Comparator comparator;
+	
+	/**
+	 * @param comparator the comparator whose verifier evaluates the matches
+	 */
+	public EncryptedTournament(Comparator comparator)
+	{
+		this.comparator = comparator;
+	}
+	
+	/**
+	 * Finds the minimum of values encrypted with the Paillier crypto system.
+	 *
+	 * @param values, encrypted, must not be empty
+	 * @param l       the maximum bit length of all encrypted values
+	 */
+	public Result min(List<EncryptedNumber> values, int l)
+	{
+		return play(values, l, false);
+	}
+	
+	/**
+	 * Finds the maximum of values encrypted with the Paillier crypto system.
+	 *
+	 * @param values, encrypted, must not be empty
+	 * @param l       the maximum bit length of all encrypted values
+	 */
+	public Result max(List<EncryptedNumber> values, int l)
+	{
+		return play(values, l, true);
+	}
+	
+	/**
+	 * Plays the tournament level by level. In a match of x against y, with x the one of smaller index, the
+	 * swap differences are computed for (x, y) for the minimum and for (y, x) for the maximum, so that a tie
+	 * goes to x in both cases.
+	 */
+	private Result play(List<EncryptedNumber> values, int l, boolean max)
+	{
+		if (values.isEmpty())
+		{
+			throw new IllegalArgumentException("values must not be empty");
+		}
+		PaillierContext       cxt         = values.get(0).getContext();
+		List<EncryptedNumber> winners     = new ArrayList<>(values);
+		List<EncryptedNumber> indices     = new ArrayList<>();
+		int                   rounds      = 0;
+		long                  comparisons = 0;
+		
+		for (int i = 0; i < values.size(); i++)
+		{
+			indices.add(cxt.encrypt(i));
+		}
+		while (winners.size() > 1)
+		{
+			int                 matches = winners.size() / 2;
+			EncryptedNumber[][] a       = new EncryptedNumber[matches][];
+			EncryptedNumber[][] b       = new EncryptedNumber[matches][];
+			
+			for (int m = 0; m < matches; m++)
+			{
+				EncryptedNumber[] x = {winners.get(2 * m), indices.get(2 * m)};
+				EncryptedNumber[] y = {winners.get(2 * m + 1), indices.get(2 * m + 1)};
+				
+				a[m] = max ? y : x;
+				b[m] = max ? x : y;
+			}
+			EncryptedNumber[][]   sd           = comparator.swapDifferencesAll(a, b, l);
+			List<EncryptedNumber> levelWinners = new ArrayList<>();
+			List<EncryptedNumber> levelIndices = new ArrayList<>();
+			
+			for (int m = 0; m < matches; m++)
+			{
+				levelWinners.add(max ? b[m][0].add(sd[m][0]) : a[m][0].subtract(sd[m][0]));
+				levelIndices.add(max ? b[m][1].add(sd[m][1]) : a[m][1].subtract(sd[m][1]));
+			}
+			if (winners.size() % 2 == 1)
+			{
+				levelWinners.add(winners.get(winners.size() - 1));
+				levelIndices.add(indices.get(indices.size() - 1));
+			}
+			winners = levelWinners;
+			indices = levelIndices;
+			rounds++;
+			comparisons += matches;
+		}
+		
+		return new Result(winners.get(0), indices.get(0), rounds, comparisons);
+	}
+}
\ No newline at end of file
@@ -0,0 +1,74 @@
+package com.tudelft.comparison;
+
+import com.tudelft.paillier.PaillierContext;
+
+import java.math.BigInteger;
+
+/**
+ * The layout of blinded differences packed into one plaintext for {@link ComparisonMode#PACKED_DIFFERENCES}.
+ *
+ * A blinded difference r * (a - b) + r' of values of at most l bits is smaller than 2<sup>2l + 83</sup> in
+ * magnitude, so it fits a balanced digit of 2l + 84 bits. The i-th difference of a plaintext is weighted by
+ * 2<sup>i(2l + 84)</sup>, and only as many slots are used as keep the packed plaintext below n / 2 in
+ * magnitude, so that it decrypts to the exact sum in a signed context.
+ */
+final class PackedDifferences
+{
+	private PackedDifferences()
+	{
+	}
+	
+	/**
+	 * @return the width of a slot for values of at most l bits
+	 */
+	static int slotBits(int l)
+	{
+		return 2 * l + 84;
+	}
+	
+	/**
+	 * @return the number of blinded differences of values of at most l bits per plaintext
+	 */
+	static int slots(PaillierContext cxt, int l)
+	{
+		return (cxt.getPublicKey().getModulus().bitLength() - 2) / slotBits(l);
+	}
+	
+	/**
+	 * @return the number of ciphertexts needed to pack count blinded differences
+	 */
+	static int ciphertexts(PaillierContext cxt, int l, int count)
+	{
+		int slots = slots(cxt, l);
+		
+		return (count + slots - 1) / Math.max(1, slots);
+	}
+	
+	/**
+	 * Splits a packed plaintext into its blinded differences.
+	 *
+	 * @param packed the decrypted plaintext
+	 * @param slots  the number of slots to read
+	 * @param l      the maximum bit length of the compared values
+	 * @return the blinded differences, in slot order
+	 */
+	static BigInteger[] unpack(BigInteger packed, int slots, int l)
+	{
+		int          width       = slotBits(l);
+		BigInteger   base        = BigInteger.ONE.shiftLeft(width);
+		BigInteger[] differences = new BigInteger[slots];
+		
+		for (int i = 0; i < slots; i++)
+		{
+			BigInteger digit = packed.mod(base);
+			
+			if (digit.testBit(width - 1))
+			{
+				digit = digit.subtract(base);
+			}
+			differences[i] = digit;
+			packed = packed.subtract(digit).shiftRight(width);
+		}
+		return differences;
+	}
+}
\ No newline at end of file
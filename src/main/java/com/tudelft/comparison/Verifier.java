@@ -1,18 +1,44 @@
 package com.tudelft.comparison;
 
 import com.tudelft.paillier.*;
+import com.tudelft.paillier.util.ParallelUtil;
 
 import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
-class Verifier
+class Verifier implements VerifierEndpoint
 {
 	private transient PaillierPrivateKey sk;
 	private transient PaillierContext    cxt;
+	private transient ForkJoinPool       pool;
+	
+	/**
+	 * Pools of obfuscated encryptions of -1, 0 and 1, indexed by result + 1. Null if disabled.
+	 */
+	private transient volatile PrecomputedPool[] resultPools;
+	
+	/**
+	 * The exponents of the encodings of -1, 0 and 1, indexed by result + 1.
+	 */
+	private transient int[] resultExponents;
 	
 	Verifier(PaillierPrivateKey sk)
+	{
+		this(sk, ForkJoinPool.commonPool());
+	}
+	
+	Verifier(PaillierPrivateKey sk, ForkJoinPool pool)
 	{
 		this.sk = sk;
 		this.cxt = sk.getPublicKey().createSignedContext();
+		this.pool = pool;
+		this.resultExponents = new int[3];
+		for (int z = -1; z <= 1; z++)
+		{
+			resultExponents[z + 1] = cxt.encode(z).getExponent();
+		}
 	}
 	
 	/**
@@ -23,11 +49,226 @@ class Verifier
 	 * @param br the randomized value a
 	 * @return [-1, 0, 1]
 	 */
-	EncryptedNumber getZ(EncryptedNumber ar, EncryptedNumber br)
+	public EncryptedNumber getZ(EncryptedNumber ar, EncryptedNumber br)
+	{
+		BigInteger a = sk.decryptSplit(ar).decodeBigInteger();
+		BigInteger b = sk.decryptSplit(br).decodeBigInteger();
+		
+		return encryptResult(a.compareTo(b));
+	}
+	
+	/**
+	 * Batched version of {@link #getZ}. Decrypts all randomized values and encrypts all evaluation
+	 * results in parallel.
+	 *
+	 * @param ar the randomized values a
+	 * @param br the randomized values b, same length as ar
+	 * @return [-1, 0, 1] for every pair, in input order
+	 */
+	public List<EncryptedNumber> getZAll(EncryptedNumber[] ar, EncryptedNumber[] br)
+	{
+		EncodedNumber[]   a = sk.decryptAll(ar, pool);
+		EncodedNumber[]   b = sk.decryptAll(br, pool);
+		EncryptedNumber[] z = new EncryptedNumber[ar.length];
+		
+		ParallelUtil.parallelFor(pool, z.length, i ->
+				z[i] = encryptResult(a[i].decodeBigInteger().compareTo(b[i].decodeBigInteger())));
+		
+		return Arrays.asList(z);
+	}
+	
+	/**
+	 * Decrypts a blinded difference r * (a - b) + r' and evaluates the sign of a - b, see
+	 * {@link ComparisonMode#BLINDED_DIFFERENCE}. The evaluation result is then encrypted again and returned.
+	 *
+	 * @param dr the blinded difference
+	 * @param l  the maximum bit length of the compared values
+	 * @return [-1, 0, 1]
+	 */
+	public EncryptedNumber getZFromDifference(EncryptedNumber dr, int l)
+	{
+		return encryptResult(signum(sk.decryptSplit(dr).decodeBigInteger(), l));
+	}
+	
+	/**
+	 * Batched version of {@link #getZFromDifference}. Decrypts all blinded differences and encrypts all
+	 * evaluation results in parallel.
+	 *
+	 * @param dr the blinded differences
+	 * @param l  the maximum bit length of the compared values
+	 * @return [-1, 0, 1] for every difference, in input order
+	 */
+	public List<EncryptedNumber> getZFromDifferenceAll(EncryptedNumber[] dr, int l)
 	{
-		BigInteger a = ar.decrypt(sk).decodeBigInteger();
-		BigInteger b = br.decrypt(sk).decodeBigInteger();
+		EncodedNumber[]   d = sk.decryptAll(dr, pool);
+		EncryptedNumber[] z = new EncryptedNumber[dr.length];
+		
+		ParallelUtil.parallelFor(pool, z.length, i ->
+				z[i] = encryptResult(signum(d[i].decodeBigInteger(), l)));
 		
-		return cxt.encrypt(BigInteger.valueOf(a.compareTo(b)));
+		return Arrays.asList(z);
+	}
+	
+	/**
+	 * Decrypts packed blinded differences, see {@link ComparisonMode#PACKED_DIFFERENCES}, and evaluates the
+	 * signs of all slots of a ciphertext from a single decryption. The evaluation results are then encrypted
+	 * again and returned.
+	 *
+	 * @param packed the packed blinded differences
+	 * @param count  the number of blinded differences, all ciphertexts but the last are full
+	 * @param l      the maximum bit length of the compared values
+	 * @return [-1, 0, 1] for every difference, in slot order
+	 */
+	public List<EncryptedNumber> getZFromPackedDifferencesAll(EncryptedNumber[] packed, int count, int l)
+	{
+		int slots = PackedDifferences.slots(cxt, l);
+		
+		if (slots < 1 || packed.length != PackedDifferences.ciphertexts(cxt, l, count))
+		{
+			throw new IllegalArgumentException(count + " differences do not fit " + packed.length + " ciphertexts");
+		}
+		EncodedNumber[]   p = sk.decryptAll(packed, pool);
+		EncryptedNumber[] z = new EncryptedNumber[count];
+		
+		ParallelUtil.parallelFor(pool, p.length, i ->
+		{
+			int          from = i * slots;
+			BigInteger[] d    = PackedDifferences.unpack(p[i].decodeBigInteger(), Math.min(slots, count - from), l);
+			
+			for (int j = 0; j < d.length; j++)
+			{
+				z[from + j] = encryptResult(signum(d[j], l));
+			}
+		});
+		
+		return Arrays.asList(z);
+	}
+	
+	/**
+	 * Decrypts the blinded differences of a layer of compare-exchanges, one per pair of tuples, and the masked
+	 * differences of the tuple elements. The swap indicators and the masked differences of swapped tuples are
+	 * then encrypted again and returned, the difference is never revealed unmasked.
+	 *
+	 * @param dr    the blinded differences [r * (x[0] - y[0]) + r'] of the first elements of the tuples
+	 * @param mr    the masked differences [(x[j] - y[j]) + rho] of all elements, width per tuple
+	 * @param width the number of elements per tuple
+	 * @param l     the maximum bit length of the compared values
+	 * @return for every tuple [s] followed by [s * (x[j] - y[j] + rho)] for each of its elements, where s is 1 if
+	 * x[0] &gt; y[0] and 0 otherwise
+	 */
+	public EncryptedNumber[] getSwapAll(EncryptedNumber[] dr, EncryptedNumber[] mr, int width, int l)
+	{
+		EncodedNumber[]   d = sk.decryptAll(dr, pool);
+		EncodedNumber[]   m = sk.decryptAll(mr, pool);
+		EncryptedNumber[] z = new EncryptedNumber[(1 + width) * dr.length];
+		
+		ParallelUtil.parallelFor(pool, dr.length, i ->
+		{
+			boolean swap = signum(d[i].decodeBigInteger(), l) > 0;
+			int     k    = (1 + width) * i;
+			
+			z[k] = encryptResult(swap ? 1 : 0);
+			for (int j = 0; j < width; j++)
+			{
+				z[k + 1 + j] = encrypt(swap ? m[width * i + j].decodeBigInteger() : BigInteger.ZERO);
+			}
+		});
+		
+		return z;
+	}
+	
+	/**
+	 * Starts background-refilled pools of obfuscated encryptions of the three possible results, so that
+	 * answering a comparison only takes a ciphertext from a pool. Replaces any pools started before.
+	 *
+	 * @param lowWatermark  the pool size at or below which a pool is refilled
+	 * @param highWatermark the capacity of every pool
+	 * @param threads       the number of worker threads per pool
+	 */
+	void enableResultPools(int lowWatermark, int highWatermark, int threads)
+	{
+		PrecomputedPool[] pools = new PrecomputedPool[3];
+		
+		for (int z = -1; z <= 1; z++)
+		{
+			BigInteger plaintext = cxt.encode(z).getValue();
+			
+			pools[z + 1] = new PrecomputedPool(() -> sk.raw_encrypt(plaintext), lowWatermark, highWatermark, threads,
+			                                   "verifier-result-pool-" + (z + 1));
+		}
+		disableResultPools();
+		resultPools = pools;
+	}
+	
+	/**
+	 * Stops the result pools, results are encrypted on demand again.
+	 */
+	void disableResultPools()
+	{
+		PrecomputedPool[] pools = resultPools;
+		
+		resultPools = null;
+		if (pools != null)
+		{
+			for (PrecomputedPool resultPool : pools)
+			{
+				resultPool.shutdown();
+			}
+		}
+	}
+	
+	/**
+	 * @return the number of results taken from the result pools, 0 if they are disabled
+	 */
+	long getResultPoolHits()
+	{
+		PrecomputedPool[] pools = resultPools;
+		
+		return pools == null ? 0 : Arrays.stream(pools).mapToLong(PrecomputedPool::getHits).sum();
+	}
+	
+	/**
+	 * @return the number of results encrypted on demand because a result pool was empty, 0 if they are disabled
+	 */
+	long getResultPoolMisses()
+	{
+		PrecomputedPool[] pools = resultPools;
+		
+		return pools == null ? 0 : Arrays.stream(pools).mapToLong(PrecomputedPool::getMisses).sum();
+	}
+	
+	/**
+	 * Encrypts a comparison result, taking a ciphertext from the result pools if possible.
+	 */
+	private EncryptedNumber encryptResult(int z)
+	{
+		PrecomputedPool[] pools      = resultPools;
+		BigInteger        ciphertext = pools == null ? null : pools[z + 1].take();
+		
+		if (ciphertext == null)
+		{
+			return encrypt(BigInteger.valueOf(z));
+		}
+		return new EncryptedNumber(cxt, ciphertext, resultExponents[z + 1], true);
+	}
+	
+	/**
+	 * Encrypts and obfuscates a value in the public context, using the private key only for the faster CRT
+	 * encryption, so that the results combine with the ciphertexts of the {@link Comparator}.
+	 */
+	private EncryptedNumber encrypt(BigInteger value)
+	{
+		EncodedNumber encoded = cxt.encode(value);
+		
+		return new EncryptedNumber(cxt, sk.raw_encrypt(encoded.getValue()), encoded.getExponent(), true);
+	}
+	
+	/**
+	 * The blinding offset is below 2^(79 + l) in magnitude, any difference of at least one is blinded
+	 * to a larger magnitude.
+	 */
+	private static int signum(BigInteger d, int l)
+	{
+		return d.abs().bitLength() <= 79 + l ? 0 : d.signum();
 	}
 }
\ No newline at end of file
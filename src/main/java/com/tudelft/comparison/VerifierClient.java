@@ -0,0 +1,485 @@
+package com.tudelft.comparison;
+
+import com.tudelft.paillier.*;
+import com.tudelft.paillier.util.ParallelUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connects a {@link Comparator} to a remote {@link VerifierServer}, see {@link ComparisonProtocol} for the
+ * framing.
+ *
+ * Single comparisons are collected into batches per mode and bit length. A batch is sent as one frame once
+ * it holds {@code maxBatchSize} comparisons or once the batching window has passed since its first
+ * comparison, whichever comes first. Batched comparisons are split into frames of {@code maxBatchSize}.
+ * Up to {@code pipelineDepth} frames are in flight at once, the server answers them in any order.
+ *
+ * Blinded values are obfuscated before they leave the process.
+ *
+ * Examples:
+ * <ul>
+ *   <li>
+ *     <p>To compare against a verifier on another host:</p>
+ *     <p><code>VerifierClient client = new VerifierClient(pk, "verifier.example.org", 4711);</code></p>
+ *     <p><code>Comparator comparator = new Comparator(client, ComparisonMode.BLINDED_DIFFERENCE);</code></p>
+ *   </li>
+ * </ul>
+ */
+public final class VerifierClient implements VerifierEndpoint, Closeable
+{
+	public static final int  DEFAULT_MAX_BATCH_SIZE     = 64;
+	public static final long DEFAULT_BATCH_WINDOW_MICROS = 500;
+	public static final int  DEFAULT_PIPELINE_DEPTH     = 16;
+	
+	private static final AtomicInteger clientCount = new AtomicInteger();
+	
+	/**
+	 * A frame waiting for its response.
+	 */
+	private static final class PendingFrame
+	{
+		private final CompletableFuture<EncryptedNumber[]> results = new CompletableFuture<>();
+		private final int                                  resultCount;
+		
+		private PendingFrame(int resultCount)
+		{
+			this.resultCount = resultCount;
+		}
+	}
+	
+	private final PaillierContext                                        cxt;
+	private final int                                                    width;
+	private final int                                                    maxBatchSize;
+	private final Socket                                                 socket;
+	private final DataInputStream                                        in;
+	private final DataOutputStream                                       out;
+	private final Thread                                                 reader;
+	private final ScheduledExecutorService                               flusher;
+	private final Semaphore                                              inFlight;
+	private final Map<Integer, PendingFrame>                             pending = new ConcurrentHashMap<>();
+	private final Batcher<Long>                                           batcher;
+	private final AtomicInteger                                          nextId  = new AtomicInteger();
+	private final AtomicLong                                             frames  = new AtomicLong();
+	
+	private volatile boolean closed;
+	
+	/**
+	 * Connects with the default batch size, batching window and pipeline depth.
+	 *
+	 * @param publicKey the public key of the verifier
+	 * @param host      the host of the verifier server
+	 * @param port      the port of the verifier server
+	 * @throws IOException                  if the connection cannot be established
+	 * @throws PaillierKeyMismatchException if the server holds the private key of a different public key
+	 */
+	public VerifierClient(PaillierPublicKey publicKey, String host, int port) throws IOException
+	{
+		this(publicKey, new InetSocketAddress(host, port), DEFAULT_MAX_BATCH_SIZE, DEFAULT_BATCH_WINDOW_MICROS, DEFAULT_PIPELINE_DEPTH);
+	}
+	
+	/**
+	 * @param publicKey         the public key of the verifier
+	 * @param address           the address of the verifier server
+	 * @param maxBatchSize      the maximum number of comparisons per frame
+	 * @param batchWindowMicros how long single comparisons wait for a batch to fill up, 0 to send them at once
+	 * @param pipelineDepth     the maximum number of frames in flight
+	 * @throws IOException                  if the connection cannot be established
+	 * @throws PaillierKeyMismatchException if the server holds the private key of a different public key
+	 */
+	public VerifierClient(PaillierPublicKey publicKey, InetSocketAddress address, int maxBatchSize,
+	                      long batchWindowMicros, int pipelineDepth) throws IOException
+	{
+		if (maxBatchSize < 1 || maxBatchSize > ComparisonProtocol.MAX_FRAME_SIZE)
+		{
+			throw new IllegalArgumentException("maxBatchSize must be between 1 and " + ComparisonProtocol.MAX_FRAME_SIZE);
+		}
+		if (batchWindowMicros < 0)
+		{
+			throw new IllegalArgumentException("batchWindowMicros must be non-negative");
+		}
+		if (pipelineDepth < 1)
+		{
+			throw new IllegalArgumentException("pipelineDepth must be positive");
+		}
+		int id = clientCount.getAndIncrement();
+		
+		this.cxt = publicKey.createSignedContext();
+		this.width = ComparisonProtocol.ciphertextWidth(cxt);
+		this.maxBatchSize = maxBatchSize;
+		this.inFlight = new Semaphore(pipelineDepth);
+		this.socket = new Socket();
+		this.socket.setTcpNoDelay(true);
+		this.socket.connect(address);
+		this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		try
+		{
+			handshake(publicKey);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			socket.close();
+			throw e;
+		}
+		this.reader = new Thread(this::read, "verifier-client-" + id);
+		this.reader.setDaemon(true);
+		this.reader.start();
+		this.flusher = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "verifier-client-" + id + "-flush");
+			
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.batcher = new Batcher<>(this::send, () -> flusher, maxBatchSize, batchWindowMicros);
+	}
+	
+	/**
+	 * Connects to a verifier server on the loopback interface.
+	 *
+	 * @param publicKey the public key of the verifier
+	 * @param server    a server running in this process
+	 */
+	public static VerifierClient loopback(PaillierPublicKey publicKey, VerifierServer server) throws IOException
+	{
+		return new VerifierClient(publicKey, new InetSocketAddress(server.getAddress(), server.getPort()),
+				DEFAULT_MAX_BATCH_SIZE, DEFAULT_BATCH_WINDOW_MICROS, DEFAULT_PIPELINE_DEPTH);
+	}
+	
+	/**
+	 * @return the number of frames sent so far
+	 */
+	public long getFrames()
+	{
+		return frames.get();
+	}
+	
+	/**
+	 * Closes the connection. Comparisons that have not been answered yet fail.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		closed = true;
+		flusher.shutdownNow();
+		socket.close();
+	}
+	
+	@Override
+	public EncryptedNumber getZ(EncryptedNumber ar, EncryptedNumber br)
+	{
+		return await(enqueue(ComparisonProtocol.OP_BOTH_OPERANDS, 0, ar.getSafeEncryptedNumber(), br.getSafeEncryptedNumber()));
+	}
+	
+	@Override
+	public List<EncryptedNumber> getZAll(EncryptedNumber[] ar, EncryptedNumber[] br)
+	{
+		EncryptedNumber[] operands = new EncryptedNumber[2 * ar.length];
+		
+		ParallelUtil.parallelFor(ForkJoinPool.commonPool(), ar.length, i ->
+		{
+			operands[2 * i] = ar[i].getSafeEncryptedNumber();
+			operands[2 * i + 1] = br[i].getSafeEncryptedNumber();
+		});
+		return sendAll(ComparisonProtocol.OP_BOTH_OPERANDS, 0, 1, operands);
+	}
+	
+	@Override
+	public EncryptedNumber getZFromDifference(EncryptedNumber dr, int l)
+	{
+		return await(enqueue(ComparisonProtocol.OP_BLINDED_DIFFERENCE, l, dr.getSafeEncryptedNumber()));
+	}
+	
+	@Override
+	public List<EncryptedNumber> getZFromDifferenceAll(EncryptedNumber[] dr, int l)
+	{
+		EncryptedNumber[] operands = new EncryptedNumber[dr.length];
+		
+		ParallelUtil.parallelFor(ForkJoinPool.commonPool(), dr.length, i -> operands[i] = dr[i].getSafeEncryptedNumber());
+		return sendAll(ComparisonProtocol.OP_BLINDED_DIFFERENCE, l, 1, operands);
+	}
+	
+	@Override
+	public EncryptedNumber[] getSwapAll(EncryptedNumber[] dr, EncryptedNumber[] mr, int width, int l)
+	{
+		EncryptedNumber[] operands = new EncryptedNumber[(1 + width) * dr.length];
+		
+		ParallelUtil.parallelFor(ForkJoinPool.commonPool(), dr.length, i ->
+		{
+			operands[(1 + width) * i] = dr[i].getSafeEncryptedNumber();
+			for (int j = 0; j < width; j++)
+			{
+				operands[(1 + width) * i + 1 + j] = mr[width * i + j].getSafeEncryptedNumber();
+			}
+		});
+		List<EncryptedNumber> results = sendAll(ComparisonProtocol.OP_SWAP, l, width, operands);
+		
+		return results.toArray(new EncryptedNumber[results.size()]);
+	}
+	
+	@Override
+	public List<EncryptedNumber> getZFromPackedDifferencesAll(EncryptedNumber[] packed, int count, int l)
+	{
+		int                                        slots    = PackedDifferences.slots(cxt, l);
+		EncryptedNumber[]                          operands = new EncryptedNumber[packed.length];
+		List<CompletableFuture<EncryptedNumber[]>> frames   = new ArrayList<>();
+		
+		ParallelUtil.parallelFor(ForkJoinPool.commonPool(), packed.length, i -> operands[i] = packed[i].getSafeEncryptedNumber());
+		// a frame carries up to maxBatchSize ciphertexts, each with up to slots comparisons
+		for (int from = 0; from < operands.length; from += maxBatchSize)
+		{
+			int to = Math.min(operands.length, from + maxBatchSize);
+			
+			frames.add(sendFrame(ComparisonProtocol.OP_PACKED_DIFFERENCES, l, 1, Math.min(count, to * slots) - from * slots,
+			                     Arrays.copyOfRange(operands, from, to)));
+		}
+		List<EncryptedNumber> results = new ArrayList<>(count);
+		
+		for (CompletableFuture<EncryptedNumber[]> frame : frames)
+		{
+			results.addAll(Arrays.asList(await(frame)));
+		}
+		return results;
+	}
+	
+	/**
+	 * Adds a single comparison to the open batch of its operation and bit length.
+	 */
+	private CompletableFuture<EncryptedNumber> enqueue(int operation, int l, EncryptedNumber... operands)
+	{
+		return batcher.submit((long) l << 8 | operation, operands);
+	}
+	
+	private void send(Batcher.Batch<Long> batch)
+	{
+		int                                  operation = (int) (batch.key & 0xff);
+		int                                  l         = (int) (batch.key >>> 8);
+		CompletableFuture<EncryptedNumber[]> frame;
+		
+		try
+		{
+			frame = sendFrame(operation, l, 1, batch.results.size(),
+			                  batch.operands.toArray(new EncryptedNumber[batch.operands.size()]));
+		}
+		catch (RuntimeException e)
+		{
+			batch.fail(e);
+			return;
+		}
+		frame.whenComplete((results, e) ->
+		{
+			if (e != null)
+			{
+				batch.fail(e);
+				return;
+			}
+			for (int i = 0; i < batch.results.size(); i++)
+			{
+				batch.results.get(i).complete(results[i]);
+			}
+		});
+	}
+	
+	/**
+	 * Sends the comparisons in frames of at most {@code maxBatchSize} comparisons, or of at most as many masked
+	 * differences for swaps, and waits for all of them.
+	 */
+	private List<EncryptedNumber> sendAll(int operation, int l, int tupleWidth, EncryptedNumber[] operands)
+	{
+		int                                        arity       = ComparisonProtocol.arity(operation, tupleWidth);
+		int                                        comparisons = operands.length / arity;
+		int                                        frameSize   = Math.max(1, maxBatchSize / tupleWidth);
+		List<CompletableFuture<EncryptedNumber[]>> frames      = new ArrayList<>();
+		
+		for (int from = 0; from < comparisons; from += frameSize)
+		{
+			int to = Math.min(comparisons, from + frameSize);
+			
+			frames.add(sendFrame(operation, l, tupleWidth, to - from, Arrays.copyOfRange(operands, from * arity, to * arity)));
+		}
+		List<EncryptedNumber> results = new ArrayList<>(comparisons * ComparisonProtocol.resultArity(operation, tupleWidth));
+		
+		for (CompletableFuture<EncryptedNumber[]> frame : frames)
+		{
+			results.addAll(Arrays.asList(await(frame)));
+		}
+		return results;
+	}
+	
+	/**
+	 * Writes one request frame of count entries, blocking while {@code pipelineDepth} frames are in flight.
+	 */
+	private CompletableFuture<EncryptedNumber[]> sendFrame(int operation, int l, int tupleWidth, int count,
+	                                                       EncryptedNumber[] operands)
+	{
+		if (closed)
+		{
+			throw new PaillierRuntimeException("The connection to the verifier is closed");
+		}
+		try
+		{
+			inFlight.acquire();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new PaillierRuntimeException("Interrupted while waiting for the verifier", e);
+		}
+		int          frameId = nextId.getAndIncrement();
+		PendingFrame frame   = new PendingFrame(count * ComparisonProtocol.resultArity(operation, tupleWidth));
+		
+		frame.results.whenComplete((results, e) -> inFlight.release());
+		pending.put(frameId, frame);
+		try
+		{
+			synchronized (out)
+			{
+				out.writeInt(frameId);
+				out.writeByte(operation);
+				out.writeInt(l);
+				out.writeInt(count);
+				if (operation == ComparisonProtocol.OP_SWAP)
+				{
+					out.writeInt(tupleWidth);
+				}
+				for (EncryptedNumber operand : operands)
+				{
+					ComparisonProtocol.writeCiphertext(out, operand.getCipherText(), operand.getExponent(), width);
+				}
+				out.flush();
+			}
+			frames.incrementAndGet();
+		}
+		catch (IOException e)
+		{
+			pending.remove(frameId);
+			frame.results.completeExceptionally(new PaillierRuntimeException("Cannot send to the verifier", e));
+		}
+		if (closed && pending.remove(frameId) != null)
+		{
+			frame.results.completeExceptionally(new PaillierRuntimeException("The connection to the verifier is closed"));
+		}
+		return frame.results;
+	}
+	
+	private void handshake(PaillierPublicKey publicKey) throws IOException
+	{
+		if (in.readInt() != ComparisonProtocol.MAGIC)
+		{
+			throw new IOException("Not a verifier server");
+		}
+		if (in.readByte() != ComparisonProtocol.VERSION)
+		{
+			throw new IOException("Unsupported protocol version");
+		}
+		int length = in.readInt();
+		
+		if (length < 1 || length > width)
+		{
+			throw new IOException("Malformed handshake");
+		}
+		byte[] modulus = new byte[length];
+		
+		in.readFully(modulus);
+		if (!new BigInteger(modulus).equals(publicKey.getModulus()))
+		{
+			throw new PaillierKeyMismatchException("The verifier holds a different key");
+		}
+		out.writeInt(ComparisonProtocol.MAGIC);
+		out.writeByte(ComparisonProtocol.VERSION);
+		out.flush();
+	}
+	
+	private void read()
+	{
+		try
+		{
+			while (true)
+			{
+				int          frameId = in.readInt();
+				byte         status  = in.readByte();
+				PendingFrame frame   = pending.get(frameId);
+				
+				if (frame == null)
+				{
+					throw new IOException("Unexpected response " + frameId);
+				}
+				// the frame stays pending until its response is read, so a broken response fails it as well
+				if (status == ComparisonProtocol.STATUS_OK)
+				{
+					int resultCount = in.readInt();
+					
+					if (resultCount != frame.resultCount)
+					{
+						throw new IOException("Response " + frameId + " holds " + resultCount + " results, expected " + frame.resultCount);
+					}
+					EncryptedNumber[] results = new EncryptedNumber[resultCount];
+					
+					for (int i = 0; i < results.length; i++)
+					{
+						results[i] = ComparisonProtocol.readCiphertext(in, cxt, width, true);
+					}
+					pending.remove(frameId);
+					frame.results.complete(results);
+				}
+				else
+				{
+					String error = in.readUTF();
+					
+					pending.remove(frameId);
+					frame.results.completeExceptionally(new PaillierRuntimeException("The verifier failed: " + error));
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			closed = true;
+			for (Integer frameId : pending.keySet())
+			{
+				PendingFrame frame = pending.remove(frameId);
+				
+				if (frame != null)
+				{
+					frame.results.completeExceptionally(new PaillierRuntimeException("The connection to the verifier is closed", e));
+				}
+			}
+		}
+	}
+	
+	private static <T> T await(CompletableFuture<T> future)
+	{
+		try
+		{
+			return future.join();
+		}
+		catch (CompletionException e)
+		{
+			if (e.getCause() instanceof RuntimeException)
+			{
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,60 @@
+package com.tudelft.comparison;
+
+import com.tudelft.paillier.EncryptedNumber;
+
+import java.util.List;
+
+/**
+ * The key holder's side of the comparison protocol, either in-process ({@link Verifier}) or behind a
+ * connection to a {@link VerifierServer} ({@link VerifierClient}).
+ */
+interface VerifierEndpoint
+{
+	/**
+	 * @param ar the randomized value a
+	 * @param br the randomized value b
+	 * @return [-1, 0, 1]
+	 */
+	EncryptedNumber getZ(EncryptedNumber ar, EncryptedNumber br);
+	
+	/**
+	 * @param ar the randomized values a
+	 * @param br the randomized values b, same length as ar
+	 * @return [-1, 0, 1] for every pair, in input order
+	 */
+	List<EncryptedNumber> getZAll(EncryptedNumber[] ar, EncryptedNumber[] br);
+	
+	/**
+	 * @param dr the blinded difference
+	 * @param l  the maximum bit length of the compared values
+	 * @return [-1, 0, 1]
+	 */
+	EncryptedNumber getZFromDifference(EncryptedNumber dr, int l);
+	
+	/**
+	 * @param dr the blinded differences
+	 * @param l  the maximum bit length of the compared values
+	 * @return [-1, 0, 1] for every difference, in input order
+	 */
+	List<EncryptedNumber> getZFromDifferenceAll(EncryptedNumber[] dr, int l);
+	
+	/**
+	 * @param packed the blinded differences, packed as described by {@link PackedDifferences}
+	 * @param count  the number of blinded differences, all ciphertexts but the last are full
+	 * @param l      the maximum bit length of the compared values
+	 * @return [-1, 0, 1] for every difference, in slot order
+	 */
+	List<EncryptedNumber> getZFromPackedDifferencesAll(EncryptedNumber[] packed, int count, int l);
+	
+	/**
+	 * Evaluates the compare-exchanges of one layer of a sorting network, see {@link EncryptedSorter}.
+	 *
+	 * @param dr    the blinded differences [r * (x[0] - y[0]) + r'] of the first elements of the tuples
+	 * @param mr    the masked differences [(x[j] - y[j]) + rho] of all elements, width per tuple
+	 * @param width the number of elements per tuple
+	 * @param l     the maximum bit length of the compared values
+	 * @return for every tuple [s] followed by [s * (x[j] - y[j] + rho)] for each of its elements, where s is 1 if
+	 * x[0] &gt; y[0] and 0 otherwise
+	 */
+	EncryptedNumber[] getSwapAll(EncryptedNumber[] dr, EncryptedNumber[] mr, int width, int l);
+}
\ No newline at end of file
@@ -0,0 +1,333 @@
+package com.tudelft.comparison;
+
+import com.tudelft.paillier.*;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves the key holder's side of the comparison protocol over TCP, see {@link ComparisonProtocol} for the
+ * framing. Every connection is read by its own thread, the frames it receives are evaluated concurrently on
+ * a fork-join pool and answered as soon as they are done, so a client can keep many frames in flight. At
+ * most {@link ComparisonProtocol#MAX_FRAMES_IN_FLIGHT} frames of a connection are evaluated at once, the
+ * next frame is only read once one of them is answered.
+ *
+ * Incoming ciphertexts are interpreted in the full precision, signed context of the private key.
+ */
+public final class VerifierServer implements Closeable
+{
+	private static final AtomicInteger serverCount = new AtomicInteger();
+	
+	private final Verifier        verifier;
+	private final PaillierContext cxt;
+	private final ForkJoinPool    pool;
+	private final ServerSocket    serverSocket;
+	private final Thread          acceptor;
+	private final Set<Socket>     connections = ConcurrentHashMap.newKeySet();
+	private final int             width;
+	private final int             id;
+	private final AtomicInteger   connectionCount = new AtomicInteger();
+	private final AtomicLong      frames          = new AtomicLong();
+	private final AtomicLong      comparisons     = new AtomicLong();
+	
+	private volatile boolean running = true;
+	
+	/**
+	 * Starts a server on all interfaces, evaluating comparisons on the common fork-join pool.
+	 *
+	 * @param sk   the private key of the verifier
+	 * @param port the port to listen on, 0 for an ephemeral port
+	 */
+	public VerifierServer(PaillierPrivateKey sk, int port) throws IOException
+	{
+		this(sk, new InetSocketAddress(port), ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Starts a server on the loopback interface, e.g. for tests and benchmarks.
+	 *
+	 * @param sk the private key of the verifier
+	 * @return a server listening on an ephemeral loopback port
+	 */
+	public static VerifierServer loopback(PaillierPrivateKey sk) throws IOException
+	{
+		return new VerifierServer(sk, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * @param sk      the private key of the verifier
+	 * @param address the address to listen on
+	 * @param pool    the fork-join pool comparisons are evaluated on
+	 */
+	public VerifierServer(PaillierPrivateKey sk, InetSocketAddress address, ForkJoinPool pool) throws IOException
+	{
+		this.verifier = new Verifier(sk, pool);
+		this.cxt = sk.getPublicKey().createSignedContext();
+		this.pool = pool;
+		this.width = ComparisonProtocol.ciphertextWidth(cxt);
+		this.id = serverCount.getAndIncrement();
+		this.serverSocket = new ServerSocket();
+		this.serverSocket.bind(address);
+		this.acceptor = new Thread(this::accept, "verifier-server-" + id);
+		this.acceptor.setDaemon(true);
+		this.acceptor.start();
+	}
+	
+	/**
+	 * @return the port this server listens on
+	 */
+	public int getPort()
+	{
+		return serverSocket.getLocalPort();
+	}
+	
+	/**
+	 * @return the address this server listens on
+	 */
+	public InetAddress getAddress()
+	{
+		return serverSocket.getInetAddress();
+	}
+	
+	/**
+	 * @return the number of frames evaluated so far
+	 */
+	public long getFrames()
+	{
+		return frames.get();
+	}
+	
+	/**
+	 * @return the number of comparisons evaluated so far
+	 */
+	public long getComparisons()
+	{
+		return comparisons.get();
+	}
+	
+	/**
+	 * See {@link Comparator#enableResultPools(int, int, int)}.
+	 */
+	public void enableResultPools(int lowWatermark, int highWatermark, int threads)
+	{
+		verifier.enableResultPools(lowWatermark, highWatermark, threads);
+	}
+	
+	/**
+	 * See {@link Comparator#disableResultPools()}.
+	 */
+	public void disableResultPools()
+	{
+		verifier.disableResultPools();
+	}
+	
+	/**
+	 * Stops accepting connections and closes all open connections. Frames still being evaluated are dropped.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		running = false;
+		serverSocket.close();
+		for (Socket socket : connections)
+		{
+			socket.close();
+		}
+		verifier.disableResultPools();
+	}
+	
+	private void accept()
+	{
+		while (running)
+		{
+			try
+			{
+				Socket socket = serverSocket.accept();
+				
+				socket.setTcpNoDelay(true);
+				connections.add(socket);
+				
+				Thread reader = new Thread(() -> serve(socket), "verifier-server-" + id + "-" + connectionCount.getAndIncrement());
+				
+				reader.setDaemon(true);
+				reader.start();
+			}
+			catch (IOException e)
+			{
+				// the server socket was closed
+				return;
+			}
+		}
+	}
+	
+	private void serve(Socket socket)
+	{
+		try (Socket s = socket)
+		{
+			DataInputStream  in  = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+			byte[]           modulus = cxt.getPublicKey().getModulus().toByteArray();
+			Semaphore        inFlight = new Semaphore(ComparisonProtocol.MAX_FRAMES_IN_FLIGHT);
+			
+			out.writeInt(ComparisonProtocol.MAGIC);
+			out.writeByte(ComparisonProtocol.VERSION);
+			out.writeInt(modulus.length);
+			out.write(modulus);
+			out.flush();
+			if (in.readInt() != ComparisonProtocol.MAGIC || in.readByte() != ComparisonProtocol.VERSION)
+			{
+				throw new IOException("Unsupported client");
+			}
+			while (running)
+			{
+				int frameId;
+				
+				try
+				{
+					frameId = in.readInt();
+				}
+				catch (EOFException e)
+				{
+					return;
+				}
+				int operation  = ComparisonProtocol.readOperation(in);
+				int l          = in.readInt();
+				int count      = in.readInt();
+				int tupleWidth = operation == ComparisonProtocol.OP_SWAP ? in.readInt() : 1;
+				
+				if (count < 0 || tupleWidth < 1 || (long) count * tupleWidth > ComparisonProtocol.MAX_FRAME_SIZE
+				    || l < 0 || l > Comparator.MAX_BIT_LENGTH)
+				{
+					throw new IOException("Malformed frame");
+				}
+				inFlight.acquire();
+				
+				EncryptedNumber[] operands = new EncryptedNumber[ComparisonProtocol.operands(operation, count, tupleWidth, cxt, l)];
+				
+				try
+				{
+					for (int i = 0; i < operands.length; i++)
+					{
+						operands[i] = ComparisonProtocol.readCiphertext(in, cxt, width, true);
+					}
+					pool.execute(() -> respond(out, inFlight, frameId, operation, l, count, tupleWidth, operands));
+				}
+				catch (IOException | RuntimeException e)
+				{
+					inFlight.release();
+					throw e;
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			// the connection was closed or the client violated the protocol, drop the connection
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			connections.remove(socket);
+		}
+	}
+	
+	private void respond(DataOutputStream out, Semaphore inFlight, int frameId, int operation, int l, int count,
+	                     int tupleWidth, EncryptedNumber[] operands)
+	{
+		List<EncryptedNumber> results = null;
+		String                error   = null;
+		
+		try
+		{
+			results = evaluate(operation, l, count, tupleWidth, operands);
+			frames.incrementAndGet();
+			comparisons.addAndGet(results.size() / ComparisonProtocol.resultArity(operation, tupleWidth));
+		}
+		catch (RuntimeException e)
+		{
+			error = e.getMessage() == null ? e.getClass().getName() : e.getMessage();
+		}
+		try
+		{
+			synchronized (out)
+			{
+				out.writeInt(frameId);
+				if (results != null)
+				{
+					out.writeByte(ComparisonProtocol.STATUS_OK);
+					out.writeInt(results.size());
+					for (EncryptedNumber z : results)
+					{
+						ComparisonProtocol.writeCiphertext(out, z.getCipherText(), z.getExponent(), width);
+					}
+				}
+				else
+				{
+					out.writeByte(ComparisonProtocol.STATUS_ERROR);
+					out.writeUTF(error);
+				}
+				out.flush();
+			}
+		}
+		catch (IOException e)
+		{
+			// the connection was closed, the client fails its pending frames
+		}
+		finally
+		{
+			inFlight.release();
+		}
+	}
+	
+	private List<EncryptedNumber> evaluate(int operation, int l, int count, int tupleWidth, EncryptedNumber[] operands)
+	{
+		if (operation == ComparisonProtocol.OP_BLINDED_DIFFERENCE)
+		{
+			return verifier.getZFromDifferenceAll(operands, l);
+		}
+		if (operation == ComparisonProtocol.OP_PACKED_DIFFERENCES)
+		{
+			return verifier.getZFromPackedDifferencesAll(operands, count, l);
+		}
+		if (operation == ComparisonProtocol.OP_SWAP)
+		{
+			EncryptedNumber[] dr = new EncryptedNumber[count];
+			EncryptedNumber[] mr = new EncryptedNumber[count * tupleWidth];
+			
+			for (int i = 0; i < count; i++)
+			{
+				dr[i] = operands[(1 + tupleWidth) * i];
+				System.arraycopy(operands, (1 + tupleWidth) * i + 1, mr, tupleWidth * i, tupleWidth);
+			}
+			return Arrays.asList(verifier.getSwapAll(dr, mr, tupleWidth, l));
+		}
+		EncryptedNumber[] ar = new EncryptedNumber[operands.length / 2];
+		EncryptedNumber[] br = new EncryptedNumber[operands.length / 2];
+		
+		for (int i = 0; i < ar.length; i++)
+		{
+			ar[i] = operands[2 * i];
+			br[i] = operands[2 * i + 1];
+		}
+		return verifier.getZAll(ar, br);
+	}
+}
\ No newline at end of file
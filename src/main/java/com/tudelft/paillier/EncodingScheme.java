@@ -165,6 +165,18 @@ public interface EncodingScheme {
    */
   public double decodeDouble(EncodedNumber encoded) throws DecodeException;
 
+  /**
+   * Decodes a raw encoded {@code value} with the given {@code exponent} to the exact {@code double}
+   * representation, without wrapping it in an {@code EncodedNumber} first. The value is assumed
+   * to be encoded with this EncodingScheme, no context check is done.
+   *
+   * @param value the encoded value, e.g. a decrypted plaintext.
+   * @param exponent the exponent of the encoded value.
+   * @return the decoding result.
+   * @throws DecodeException if the {@code value} cannot be decoded.
+   */
+  public double decodeDouble(BigInteger value, int exponent) throws DecodeException;
+
   /**
    * Decodes to the exact {@code long} representation. Throws DecodeException if the decoded result
    * is greater than {@link Long#MAX_VALUE} or less than {@link Long#MIN_VALUE}.
@@ -174,6 +186,18 @@ public interface EncodingScheme {
    * @throws DecodeException if the {@code encoded} cannot be decoded.
    */
   public long decodeLong(EncodedNumber encoded) throws DecodeException;
+
+  /**
+   * Decodes a raw encoded {@code value} with the given {@code exponent} to the exact {@code long}
+   * representation, without wrapping it in an {@code EncodedNumber} first. The value is assumed
+   * to be encoded with this EncodingScheme, no context check is done.
+   *
+   * @param value the encoded value, e.g. a decrypted plaintext.
+   * @param exponent the exponent of the encoded value.
+   * @return the decoding result.
+   * @throws DecodeException if the {@code value} cannot be decoded.
+   */
+  public long decodeLong(BigInteger value, int exponent) throws DecodeException;
   
   /**
    * Decodes to an approximate {@code BigDecimal} representation. The relative error of the approximation
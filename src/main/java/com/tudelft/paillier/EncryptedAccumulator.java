@@ -0,0 +1,159 @@
+package com.tudelft.paillier;
+
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A mutable accumulator for the sum of many {@code EncryptedNumber}s.
+ *
+ * Summing with {@link PaillierContext#add(EncryptedNumber, EncryptedNumber)} creates a new
+ * {@code EncryptedNumber} for every term and rescales one of the operands with a modular
+ * exponentiation whenever their exponents differ. The accumulator instead keeps a running product
+ * of ciphertexts for every distinct exponent, multiplying each term into the product of its
+ * exponent with a single modular multiplication. The products are aligned to the smallest exponent
+ * only once, when {@link #result()} is called, at the cost of one exponentiation per distinct
+ * exponent.
+ *
+ * The accumulator can be used from multiple threads at once: every thread adds to its own partial
+ * products, which are merged by {@link #result()}.
+ */
+public final class EncryptedAccumulator {
+
+  /**
+   * The running products of one thread, by exponent.
+   */
+  private static final class Partial {
+
+    private final Map<Integer, BigInteger> products = new HashMap<>();
+
+    private long count;
+
+    private boolean isSafe = true;
+  }
+
+  private final PaillierContext context;
+
+  private final BigInteger modulusSquared;
+
+  private final Queue<Partial> partials = new ConcurrentLinkedQueue<>();
+
+  private final ThreadLocal<Partial> partial = ThreadLocal.withInitial(() -> {
+    Partial partial = new Partial();
+    partials.add(partial);
+    return partial;
+  });
+
+  /**
+   * Constructs an empty accumulator.
+   *
+   * @param context of the {@code EncryptedNumber}s to be accumulated.
+   * @throws IllegalArgumentException if {@code context} is a {@code MockPaillierContext}.
+   */
+  public EncryptedAccumulator(PaillierContext context) {
+    if (context == null) {
+      throw new NullPointerException("context must not be null");
+    }
+    if (context instanceof MockPaillierContext) {
+      throw new IllegalArgumentException("MockPaillierContext does not support accumulation");
+    }
+    this.context = context;
+    this.modulusSquared = context.getPublicKey().getModulusSquared();
+  }
+
+  /**
+   * @return the context of this accumulator.
+   */
+  public PaillierContext getContext() {
+    return context;
+  }
+
+  /**
+   * Adds an {@code EncryptedNumber} to the sum.
+   *
+   * @param encrypted the {@code EncryptedNumber} to add.
+   * @return this accumulator.
+   * @throws PaillierContextMismatchException if the {@code PaillierContext} of {@code encrypted}
+   * does not match the context of this accumulator.
+   */
+  public EncryptedAccumulator add(EncryptedNumber encrypted) throws PaillierContextMismatchException {
+    if (encrypted.getContext() != context) {
+      context.checkSameContext(encrypted);
+    }
+    Partial partial = this.partial.get();
+    synchronized (partial) {
+      partial.products.merge(encrypted.getExponent(), encrypted.ciphertext,
+                             (product, ciphertext) -> product.multiply(ciphertext).mod(modulusSquared));
+      partial.count++;
+      partial.isSafe &= encrypted.isSafe;
+    }
+    return this;
+  }
+
+  /**
+   * Adds all {@code EncryptedNumber}s to the sum.
+   *
+   * @param encrypted the {@code EncryptedNumber}s to add.
+   * @return this accumulator.
+   * @throws PaillierContextMismatchException if the {@code PaillierContext} of any of the
+   * {@code EncryptedNumber}s does not match the context of this accumulator.
+   */
+  public EncryptedAccumulator addAll(Iterable<EncryptedNumber> encrypted) throws PaillierContextMismatchException {
+    for (EncryptedNumber number : encrypted) {
+      add(number);
+    }
+    return this;
+  }
+
+  /**
+   * @return the number of {@code EncryptedNumber}s added so far.
+   */
+  public long getCount() {
+    long count = 0;
+    for (Partial partial : partials) {
+      synchronized (partial) {
+        count += partial.count;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Merges the partial products of all threads and aligns them to the smallest exponent.
+   * The accumulator is not modified and more numbers can be added afterwards.
+   *
+   * @return the sum of all {@code EncryptedNumber}s added so far, an encryption of zero if none was added.
+   */
+  public EncryptedNumber result() {
+    Map<Integer, BigInteger> products = new HashMap<>();
+    boolean isSafe = true;
+    for (Partial partial : partials) {
+      synchronized (partial) {
+        for (Map.Entry<Integer, BigInteger> entry : partial.products.entrySet()) {
+          products.merge(entry.getKey(), entry.getValue(),
+                         (product, other) -> product.multiply(other).mod(modulusSquared));
+        }
+        isSafe &= partial.isSafe;
+      }
+    }
+    if (products.isEmpty()) {
+      return context.encrypt(BigInteger.ZERO);
+    }
+    int minExponent = Integer.MAX_VALUE;
+    for (int exponent : products.keySet()) {
+      minExponent = Math.min(minExponent, exponent);
+    }
+    final PaillierPublicKey publicKey = context.getPublicKey();
+    BigInteger result = BigInteger.ONE;
+    for (Map.Entry<Integer, BigInteger> entry : products.entrySet()) {
+      BigInteger product = entry.getValue();
+      if (entry.getKey() > minExponent) {
+        product = publicKey.raw_multiply(product, context.getRescalingFactor(entry.getKey() - minExponent));
+      }
+      result = publicKey.raw_add(result, product);
+    }
+    return new EncryptedNumber(context, result, minExponent, isSafe);
+  }
+}
@@ -0,0 +1,67 @@
+package com.tudelft.paillier;
+
+import com.tudelft.paillier.util.BigIntegerUtil;
+
+import java.math.BigInteger;
+
+/**
+ * Computes obfuscation factors <code>h<sup>s</sup> mod n<sup>2</sup></code> for a fixed base
+ * <code>h</code> and a short random exponent <code>s</code>.
+ *
+ * The exponentiation uses a {@link FixedBaseTable}, so an obfuscation factor costs at most
+ * {@code exponentLength / FixedBaseTable.WINDOW_BITS} modular multiplications. The table is built on
+ * first use.
+ */
+final class FixedBaseObfuscator {
+
+  private final BigInteger base;
+
+  private final int exponentLength;
+
+  private final BigInteger modulusSquared;
+
+  private volatile FixedBaseTable table;
+
+  FixedBaseObfuscator(BigInteger base, int exponentLength, BigInteger modulusSquared) {
+    if (base == null) {
+      throw new NullPointerException("base must not be null");
+    }
+    if (exponentLength < 1) {
+      throw new IllegalArgumentException("exponentLength must be positive");
+    }
+    if (base.signum() <= 0 || base.compareTo(modulusSquared) >= 0) {
+      throw new IllegalArgumentException("base must be in the range (0, modulusSquared)");
+    }
+    this.base = base;
+    this.exponentLength = exponentLength;
+    this.modulusSquared = modulusSquared;
+  }
+
+  BigInteger getBase() {
+    return base;
+  }
+
+  int getExponentLength() {
+    return exponentLength;
+  }
+
+  /**
+   * @return a fresh obfuscation factor <code>h<sup>s</sup> mod n<sup>2</sup></code>.
+   */
+  BigInteger factor() {
+    return getTable().pow(new BigInteger(exponentLength, BigIntegerUtil.random));
+  }
+
+  private FixedBaseTable getTable() {
+    FixedBaseTable result = table;
+    if (result == null) {
+      synchronized (this) {
+        result = table;
+        if (result == null) {
+          table = result = new FixedBaseTable(base, exponentLength, modulusSquared);
+        }
+      }
+    }
+    return result;
+  }
+}
@@ -0,0 +1,125 @@
+package com.tudelft.paillier;
+
+import java.math.BigInteger;
+
+/**
+ * Computes powers <code>g<sup>e</sup> mod m</code> of a fixed base <code>g</code> for exponents of
+ * at most a fixed bit length.
+ *
+ * The exponent is split into windows of {@code WINDOW_BITS} bits and for every window <code>i</code>
+ * the table holds <code>g<sup>j*2<sup>i*WINDOW_BITS</sup></sup></code> for all window values
+ * <code>j</code>. A power then costs at most one modular multiplication per window, i.e.,
+ * {@code exponentLength / WINDOW_BITS} multiplications instead of the {@code exponentLength}
+ * squarings of {@link BigInteger#modPow}.
+ *
+ * {@link BigInteger#mod} is several times slower than the multiplication itself at Paillier sizes,
+ * while {@link BigInteger#modPow} multiplies in Montgomery form, so products are reduced with Barrett
+ * reduction, which takes two multiplications instead of a division. With a 4096 bit modulus and a
+ * 171 bit exponent a power then takes about half the time of {@link BigInteger#modPow}, and building
+ * the table about as long as ten of them.
+ */
+public final class FixedBaseTable {
+
+  /**
+   * The number of exponent bits covered by one table lookup.
+   */
+  public static final int WINDOW_BITS = 4;
+
+  private final BigInteger base;
+
+  private final int exponentLength;
+
+  private final BigInteger modulus;
+
+  private final int modulusLength;
+
+  /**
+   * <code>floor(2<sup>2k</sup> / modulus)</code> for a modulus of <code>k</code> bits.
+   */
+  private final BigInteger barrettFactor;
+
+  private final BigInteger[][] table;
+
+  /**
+   * @param base           the base, in the range (0, modulus)
+   * @param exponentLength the maximum bit length of the exponents
+   * @param modulus        the modulus
+   */
+  public FixedBaseTable(BigInteger base, int exponentLength, BigInteger modulus) {
+    if (base == null) {
+      throw new NullPointerException("base must not be null");
+    }
+    if (exponentLength < 1) {
+      throw new IllegalArgumentException("exponentLength must be positive");
+    }
+    if (base.signum() <= 0 || base.compareTo(modulus) >= 0) {
+      throw new IllegalArgumentException("base must be in the range (0, modulus)");
+    }
+    this.base = base;
+    this.exponentLength = exponentLength;
+    this.modulus = modulus;
+    this.modulusLength = modulus.bitLength();
+    this.barrettFactor = BigInteger.ONE.shiftLeft(2 * modulusLength).divide(modulus);
+    this.table = buildTable();
+  }
+
+  public BigInteger getBase() {
+    return base;
+  }
+
+  public int getExponentLength() {
+    return exponentLength;
+  }
+
+  /**
+   * @param exponent a non-negative exponent of at most {@link #getExponentLength()} bits
+   * @return <code>base<sup>exponent</sup> mod modulus</code>
+   */
+  public BigInteger pow(BigInteger exponent) {
+    if (exponent.signum() < 0 || exponent.bitLength() > exponentLength) {
+      throw new IllegalArgumentException("exponent must be non-negative and at most " + exponentLength + " bits");
+    }
+    BigInteger result = BigInteger.ONE;
+    for (int i = 0; i < table.length; i++) {
+      int digit = 0;
+      for (int b = WINDOW_BITS - 1; b >= 0; b--) {
+        digit = (digit << 1) | (exponent.testBit(i * WINDOW_BITS + b) ? 1 : 0);
+      }
+      if (digit != 0) {
+        result = reduce(result.multiply(table[i][digit]));
+      }
+    }
+    return result;
+  }
+
+  private BigInteger[][] buildTable() {
+    int windows = (exponentLength + WINDOW_BITS - 1) / WINDOW_BITS;
+    BigInteger[][] result = new BigInteger[windows][1 << WINDOW_BITS];
+    BigInteger windowBase = base;
+    for (int i = 0; i < windows; i++) {
+      result[i][0] = BigInteger.ONE;
+      result[i][1] = windowBase;
+      for (int j = 2; j < result[i].length; j++) {
+        result[i][j] = reduce(result[i][j - 1].multiply(windowBase));
+      }
+      windowBase = reduce(result[i][result[i].length - 1].multiply(windowBase));
+    }
+    return result;
+  }
+
+  /**
+   * Barrett reduction of a product of two residues.
+   *
+   * @param x a number in the range [0, modulus<sup>2</sup>)
+   * @return <code>x mod modulus</code>
+   */
+  private BigInteger reduce(BigInteger x) {
+    BigInteger quotient = x.shiftRight(modulusLength - 1).multiply(barrettFactor).shiftRight(modulusLength + 1);
+    BigInteger remainder = x.subtract(quotient.multiply(modulus));
+    // the estimated quotient is at most two too small
+    while (remainder.compareTo(modulus) >= 0) {
+      remainder = remainder.subtract(modulus);
+    }
+    return remainder;
+  }
+}
@@ -0,0 +1,405 @@
+package com.tudelft.paillier;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.tudelft.paillier.util.SerialisationUtil;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * A private keyring which is kept on disk as a snapshot, the indexed keyring file of
+ * {@link PaillierPrivateKeyRing#writeToIndexedFile()}, and a journal of the keys put since. Putting a key
+ * appends one encrypted, checksummed record to the journal, so adding a user costs the same I/O however many
+ * keys the keyring holds. Compaction folds the journal into a new snapshot, which atomically replaces the
+ * old one, and cuts the folded records off the journal. It runs in the background at a fixed interval, or
+ * when {@link #compact()} is called.
+ *
+ * A journal record consists of the length of the sealed key, the CRC32 of that length, the CRC32 of the
+ * sealed key and the sealed key: the user id and the serialized key, encrypted with the AES key of the
+ * keyring. When the keyring is opened the journal is replayed over the snapshot. A torn record at its end,
+ * left by a crash during a put, is cut off, any other damage makes opening fail and leaves the journal as it
+ * is. A put which fails to write its record cuts it off again before it throws.
+ *
+ * The keyring uses the session it was opened with and fails with an {@link IllegalStateException} once the
+ * session is closed or expired. Puts and gets only wait for a compaction while it takes the keys and while
+ * it swaps in the new snapshot, not while it writes it. A failed background compaction leaves the records in
+ * the journal and is retried at the next interval, see {@link #getLastCompactionFailure()}.
+ */
+public class JournaledPrivateKeyRing implements Closeable
+{
+	public static Path journalFile = Paths.get(PaillierPrivateKeyRing.keyDir + "/sk_ring_journal.pai");
+	
+	private static final int RECORD_HEADER_BYTES = 4 + 4 + 4;
+	
+	private final KeyRingSession           session;
+	private final Object                   compaction = new Object();
+	private final ScheduledExecutorService compactor;
+	
+	private PaillierPrivateKeyRing skRing;
+	private FileChannel            journal;
+	private int                    journalRecords;
+	private List<Integer>          putsDuringCompaction;
+	
+	private volatile Exception lastCompactionFailure;
+	private volatile long      compactionFailures;
+	
+	private JournaledPrivateKeyRing(PaillierPrivateKeyRing skRing, KeyRingSession session, FileChannel journal,
+	                                long compactionIntervalMillis) throws IOException
+	{
+		this.skRing = skRing;
+		this.session = session;
+		this.journal = journal;
+		replay();
+		if (compactionIntervalMillis > 0)
+		{
+			this.compactor = Executors.newSingleThreadScheduledExecutor(runnable ->
+			{
+				Thread thread = new Thread(runnable, "keyring-compactor");
+				
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.compactor.scheduleWithFixedDelay(this::compactQuietly, compactionIntervalMillis,
+			                                      compactionIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+		else
+		{
+			this.compactor = null;
+		}
+	}
+	
+	/**
+	 * Opens the journaled keyring: loads the snapshot, or writes an empty one if there is none yet, and
+	 * replays the journal over it.
+	 *
+	 * @param session                  an open session of the keyring files
+	 * @param compactionIntervalMillis the interval of the background compaction, 0 for none
+	 * @return the keyring
+	 * @throws IllegalStateException if the session is closed or expired
+	 * @throws IOException           if the journal holds a corrupt record before its end
+	 */
+	public static JournaledPrivateKeyRing open(KeyRingSession session, long compactionIntervalMillis)
+			throws IOException
+	{
+		session.checkOpen();
+		
+		PaillierPrivateKeyRing skRing;
+		
+		if (PaillierPrivateKeyRing.indexFile.toFile().exists())
+		{
+			skRing = PaillierPrivateKeyRing.loadFromIndexedFile(session);
+		}
+		else
+		{
+			skRing = new PaillierPrivateKeyRing("{}", null);
+			skRing.writeToIndexedFile(session);
+		}
+		FileChannel journal = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+		                                       StandardOpenOption.WRITE);
+		
+		try
+		{
+			return new JournaledPrivateKeyRing(skRing, session, journal, compactionIntervalMillis);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			journal.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Puts the key of a user and appends it to the journal. The key is on disk when this returns.
+	 */
+	public synchronized void put(int userId, PaillierPrivateKey sk) throws IOException
+	{
+		PrivateKeyJsonSerializer serializer = new PrivateKeyJsonSerializer();
+		
+		sk.serialize(serializer);
+		
+		byte[] key    = serializer.toString().getBytes(StandardCharsets.UTF_8);
+		byte[] sealed = session.encrypt(ByteBuffer.allocate(4 + key.length).putInt(userId).put(key).array());
+		
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + sealed.length)
+				.putInt(sealed.length)
+				.putInt(checksum(ByteBuffer.allocate(4).putInt(sealed.length).array()))
+				.putInt(checksum(sealed))
+				.put(sealed);
+		long start = journal.position();
+		
+		record.flip();
+		try
+		{
+			while (record.hasRemaining())
+			{
+				journal.write(record);
+			}
+			journal.force(false);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			// a partly written record would make the records put after it unreadable
+			try
+			{
+				journal.truncate(start);
+				journal.position(start);
+			}
+			catch (IOException truncateException)
+			{
+				e.addSuppressed(truncateException);
+			}
+			throw e;
+		}
+		skRing.put(userId, sk);
+		journalRecords++;
+		if (putsDuringCompaction != null)
+		{
+			putsDuringCompaction.add(userId);
+		}
+	}
+	
+	public synchronized PaillierPrivateKey get(int userId)
+	{
+		return skRing.get(userId);
+	}
+	
+	public synchronized List<Integer> keys()
+	{
+		return skRing.keys();
+	}
+	
+	public synchronized int size()
+	{
+		return skRing.size();
+	}
+	
+	/**
+	 * @return the number of records in the journal, which the next compaction folds into the snapshot
+	 */
+	public synchronized int getJournalRecords()
+	{
+		return journalRecords;
+	}
+	
+	/**
+	 * @return the exception of the last background compaction if it failed, null if it succeeded or none ran yet
+	 */
+	public Exception getLastCompactionFailure()
+	{
+		return lastCompactionFailure;
+	}
+	
+	/**
+	 * @return the number of background compactions which failed since the keyring was opened
+	 */
+	public long getCompactionFailures()
+	{
+		return compactionFailures;
+	}
+	
+	/**
+	 * Writes a new snapshot with the keys of the journal so far, atomically replaces the old one with it and
+	 * cuts those records off the journal. Keys put while the snapshot is written stay in the journal. If the
+	 * process stops in between, the journal is replayed over the new snapshot, which puts the same keys again.
+	 */
+	public void compact() throws IOException
+	{
+		synchronized (compaction)
+		{
+			PaillierPrivateKeyRing snapshot;
+			long                   position;
+			int                    records;
+			
+			synchronized (this)
+			{
+				if (journalRecords == 0)
+				{
+					return;
+				}
+				snapshot = skRing.copy();
+				position = journal.position();
+				records = journalRecords;
+				putsDuringCompaction = new ArrayList<>();
+			}
+			try
+			{
+				snapshot.writeIndexedTempFile();
+				synchronized (this)
+				{
+					snapshot.replaceIndexedFile();
+					for (Integer userId : putsDuringCompaction)
+					{
+						snapshot.put(userId, skRing.get(userId));
+					}
+					skRing = snapshot;
+					cutJournal(position);
+					journalRecords -= records;
+				}
+			}
+			finally
+			{
+				synchronized (this)
+				{
+					putsDuringCompaction = null;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Stops the background compaction and closes the journal. Keys still in the journal are folded into the
+	 * snapshot when the keyring is compacted after it is opened again.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (compactor != null)
+		{
+			compactor.shutdown();
+			try
+			{
+				compactor.awaitTermination(1, TimeUnit.MINUTES);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		}
+		synchronized (this)
+		{
+			journal.close();
+		}
+	}
+	
+	private void compactQuietly()
+	{
+		try
+		{
+			compact();
+			lastCompactionFailure = null;
+		}
+		catch (IOException | RuntimeException e)
+		{
+			lastCompactionFailure = e;
+			compactionFailures++;
+		}
+	}
+	
+	/**
+	 * Cuts the records before a position off the journal. The records after it are moved to the start of a
+	 * new journal, which atomically replaces the old one.
+	 */
+	private void cutJournal(long position) throws IOException
+	{
+		long size = journal.size();
+		
+		if (position == size)
+		{
+			journal.truncate(0);
+			journal.force(true);
+			return;
+		}
+		ByteBuffer tail = ByteBuffer.allocate((int) (size - position));
+		
+		while (tail.hasRemaining())
+		{
+			if (journal.read(tail, position + tail.position()) < 0)
+			{
+				throw new EOFException("Truncated journal: " + journalFile);
+			}
+		}
+		PaillierPrivateKeyRing.writeAtomically(journalFile, out -> out.write(tail.array()));
+		journal.close();
+		journal = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		journal.position(journal.size());
+	}
+	
+	/**
+	 * Puts the keys of the journal. Only a torn record at the end is cut off: one whose header is incomplete,
+	 * or whose checked length reaches the end of the journal while its key is missing or fails the checksum.
+	 * The journal is only changed once all records before it were read.
+	 *
+	 * @throws IOException if a record is corrupt
+	 */
+	private synchronized void replay() throws IOException
+	{
+		ByteBuffer journalBytes = ByteBuffer.wrap(Files.readAllBytes(journalFile));
+		
+		while (journalBytes.hasRemaining())
+		{
+			int start = journalBytes.position();
+			
+			if (journalBytes.remaining() < RECORD_HEADER_BYTES)
+			{
+				break;
+			}
+			int length    = journalBytes.getInt();
+			int lengthCrc = journalBytes.getInt();
+			int crc       = journalBytes.getInt();
+			
+			if (checksum(ByteBuffer.allocate(4).putInt(length).array()) != lengthCrc || length < 0)
+			{
+				throw corrupt(start);
+			}
+			if (length > journalBytes.remaining())
+			{
+				journalBytes.position(start);
+				break;
+			}
+			byte[] sealed = new byte[length];
+			
+			journalBytes.get(sealed);
+			if (checksum(sealed) != crc)
+			{
+				if (journalBytes.hasRemaining())
+				{
+					throw corrupt(start);
+				}
+				journalBytes.position(start);
+				break;
+			}
+			byte[]     plain  = session.decrypt(sealed);
+			int        userId = ByteBuffer.wrap(plain).getInt();
+			String     keyStr = new String(Arrays.copyOfRange(plain, 4, plain.length), StandardCharsets.UTF_8);
+			JsonObject key    = (JsonObject) new JsonParser().parse(keyStr);
+			
+			skRing.put(userId, SerialisationUtil.unserialise_private(key));
+			journalRecords++;
+		}
+		if (journalBytes.position() < journalBytes.limit())
+		{
+			journal.truncate(journalBytes.position());
+		}
+		journal.position(journalBytes.position());
+	}
+	
+	private static IOException corrupt(int offset)
+	{
+		return new IOException("Corrupt record at offset " + offset + " of " + journalFile + ", the journal was left as it is.");
+	}
+	
+	private static int checksum(byte[] bytes)
+	{
+		CRC32 crc = new CRC32();
+		
+		crc.update(bytes, 0, bytes.length);
+		
+		return (int) crc.getValue();
+	}
+}
\ No newline at end of file
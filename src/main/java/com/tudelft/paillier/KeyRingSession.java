@@ -0,0 +1,180 @@
+package com.tudelft.paillier;
+
+import com.tudelft.paillier.util.KeyRingUtil;
+import org.apache.commons.lang3.ArrayUtils;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.Closeable;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * An unlocked private keyring, created by {@link PaillierPrivateKeyRing#unlock(String, long)}. Unlocking
+ * validates the password and decrypts the AES key of the keyring once, which takes two PBKDF2 derivations,
+ * after which the session loads and writes keyrings with the derived keys and its own cipher instances,
+ * see {@link PaillierPrivateKeyRing#loadFromFile(KeyRingSession)} and
+ * {@link PaillierPrivateKeyRing#writeToFile(KeyRingSession)}.
+ *
+ * A session can be used until its lifetime has passed or it is closed, a keyring loaded or written with it
+ * keeps only the session and fails with an {@link IllegalStateException} afterwards. The session holds the
+ * AES key but not the password hash it was derived with. Closing it overwrites the AES key with zeros and
+ * re-initialises the ciphers with an all-zero key, copies the JCE provider made internally are left to the
+ * garbage collector.
+ */
+public final class KeyRingSession implements Closeable
+{
+	private static final String TRANSFORMATION = "AES/CBC/PKCS7Padding";
+	private static final int    IV_LENGTH      = 16;
+	
+	private final int    iterations;
+	private final byte[] AESKey;
+	private final long   lifetimeMillis;
+	private final long   deadline;
+	private final Cipher encryptCipher;
+	private final Cipher decryptCipher;
+	
+	private boolean closed;
+	
+	/**
+	 * @param iterations     the PBKDF2 iterations of the password hash
+	 * @param AESKey         the decrypted AES key of the keyring, which the session takes over
+	 * @param lifetimeMillis the lifetime of the session, {@link Long#MAX_VALUE} for a session which never
+	 *                       expires
+	 */
+	KeyRingSession(int iterations, byte[] AESKey, long lifetimeMillis)
+	{
+		if (lifetimeMillis < 1)
+		{
+			throw new IllegalArgumentException("lifetimeMillis must be positive, was " + lifetimeMillis);
+		}
+		this.iterations = iterations;
+		this.AESKey = AESKey;
+		this.lifetimeMillis = lifetimeMillis;
+		this.deadline = lifetimeMillis >= Long.MAX_VALUE / 1000000
+		                ? Long.MAX_VALUE
+		                : System.nanoTime() + lifetimeMillis * 1000000;
+		this.encryptCipher = newCipher();
+		this.decryptCipher = newCipher();
+	}
+	
+	/**
+	 * @return whether the session is neither closed nor expired
+	 */
+	public synchronized boolean isOpen()
+	{
+		return !closed && (deadline == Long.MAX_VALUE || System.nanoTime() - deadline < 0);
+	}
+	
+	public long getLifetimeMillis()
+	{
+		return lifetimeMillis;
+	}
+	
+	/**
+	 * Wipes the AES key. Closing a session twice has no effect.
+	 */
+	@Override
+	public synchronized void close()
+	{
+		if (closed)
+		{
+			return;
+		}
+		closed = true;
+		Arrays.fill(AESKey, (byte) 0);
+		try
+		{
+			SecretKeySpec   zeroKey = new SecretKeySpec(new byte[AESKey.length], "AES");
+			IvParameterSpec zeroIv  = new IvParameterSpec(new byte[IV_LENGTH]);
+			
+			encryptCipher.init(Cipher.ENCRYPT_MODE, zeroKey, zeroIv);
+			decryptCipher.init(Cipher.DECRYPT_MODE, zeroKey, zeroIv);
+		}
+		catch (InvalidKeyException | InvalidAlgorithmParameterException e)
+		{
+			throw new PaillierRuntimeException("Could not clear keyring ciphers.", e);
+		}
+	}
+	
+	/**
+	 * @return the PBKDF2 iterations of the password hash the session was unlocked with
+	 */
+	int getIterations()
+	{
+		return iterations;
+	}
+	
+	/**
+	 * Encrypts with the AES key of the keyring under a fresh IV.
+	 *
+	 * @return the IV followed by the ciphertext
+	 */
+	synchronized byte[] encrypt(byte[] plaintext)
+	{
+		checkOpen();
+		try
+		{
+			byte[] iv = KeyRingUtil.genSalt();
+			
+			encryptCipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(AESKey, "AES"), new IvParameterSpec(iv));
+			
+			return ArrayUtils.addAll(iv, encryptCipher.doFinal(plaintext));
+		}
+		catch (InvalidAlgorithmParameterException | InvalidKeyException | IllegalBlockSizeException |
+				BadPaddingException e)
+		{
+			throw new PaillierRuntimeException("Could not encrypt keyring.", e);
+		}
+	}
+	
+	/**
+	 * Decrypts the output of {@link #encrypt(byte[])}.
+	 */
+	synchronized byte[] decrypt(byte[] sealed)
+	{
+		checkOpen();
+		try
+		{
+			decryptCipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(AESKey, "AES"),
+			                   new IvParameterSpec(sealed, 0, IV_LENGTH));
+			
+			return decryptCipher.doFinal(sealed, IV_LENGTH, sealed.length - IV_LENGTH);
+		}
+		catch (InvalidAlgorithmParameterException | InvalidKeyException | IllegalBlockSizeException |
+				BadPaddingException e)
+		{
+			throw new PaillierRuntimeException("Could not decrypt keyring.", e);
+		}
+	}
+	
+	private static Cipher newCipher()
+	{
+		PaillierPrivateKeyRing.addProvider();
+		try
+		{
+			return Cipher.getInstance(TRANSFORMATION);
+		}
+		catch (NoSuchAlgorithmException | NoSuchPaddingException e)
+		{
+			throw new PaillierRuntimeException("Could not create keyring cipher.", e);
+		}
+	}
+	
+	/**
+	 * @throws IllegalStateException if the session is closed or expired
+	 */
+	void checkOpen()
+	{
+		if (!isOpen())
+		{
+			throw new IllegalStateException(closed ? "Keyring session is closed." : "Keyring session has expired.");
+		}
+	}
+}
\ No newline at end of file
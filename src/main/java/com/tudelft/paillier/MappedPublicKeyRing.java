@@ -0,0 +1,347 @@
+package com.tudelft.paillier;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-only public keyring backed by a memory-mapped index file, written by
+ * {@link PaillierPublicKeyRing#writeToIndexedFile()}. Opening the keyring only maps the file, a key is
+ * looked up by a binary search over the sorted index and only built when it is asked for, so the start-up
+ * time does not depend on the number of keys and the heap only grows with the keys in use. The most
+ * recently used keys are kept in a bounded cache.
+ *
+ * The file consists of a header (magic, version, number of keys), the index, one entry of user id, offset
+ * and length per key, sorted by user id, and the key records. A record holds the modulus and, for keys with
+ * fixed-base obfuscation, the obfuscation base and exponent length.
+ */
+public class MappedPublicKeyRing implements Closeable
+{
+	private static final int  INDEX_MAGIC   = 0x504b5249;
+	private static final byte INDEX_VERSION = 1;
+	private static final int  HEADER_BYTES  = 4 + 1 + 4;
+	private static final int  ENTRY_BYTES   = 4 + 8 + 4;
+	private static final long SEGMENT_BYTES = 1L << 30;
+	
+	private final Path                            file;
+	private final FileChannel                     channel;
+	private final MappedByteBuffer                index;
+	private final MappedByteBuffer[]              segments;
+	private final int                             size;
+	private final int                             cacheSize;
+	private final Map<Integer, PaillierPublicKey> cache;
+	
+	private long hits;
+	private long misses;
+	
+	private MappedPublicKeyRing(Path file, int cacheSize) throws IOException
+	{
+		this.file = file;
+		this.cacheSize = cacheSize;
+		this.cache = new LinkedHashMap<Integer, PaillierPublicKey>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, PaillierPublicKey> eldest)
+			{
+				return size() > MappedPublicKeyRing.this.cacheSize;
+			}
+		};
+		channel = FileChannel.open(file, StandardOpenOption.READ);
+		try
+		{
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+			
+			if (header.getInt(0) != INDEX_MAGIC || header.get(4) != INDEX_VERSION)
+			{
+				throw new IOException("Not an indexed public keyring file: " + file);
+			}
+			size = header.getInt(5);
+			index = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, (long) ENTRY_BYTES * size);
+			
+			long recordsStart = HEADER_BYTES + (long) ENTRY_BYTES * size;
+			long recordsBytes = channel.size() - recordsStart;
+			
+			segments = new MappedByteBuffer[(int) ((recordsBytes + SEGMENT_BYTES - 1) / SEGMENT_BYTES)];
+			for (int i = 0; i < segments.length; i++)
+			{
+				long offset = SEGMENT_BYTES * i;
+				
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, recordsStart + offset,
+				                          Math.min(SEGMENT_BYTES, recordsBytes - offset));
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			channel.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Opens an indexed public keyring file.
+	 *
+	 * @param file      the indexed keyring file
+	 * @param cacheSize the maximum number of keys kept in memory
+	 * @return the keyring
+	 */
+	public static MappedPublicKeyRing open(Path file, int cacheSize) throws IOException
+	{
+		if (cacheSize < 1)
+		{
+			throw new IllegalArgumentException("cacheSize must be positive, was " + cacheSize);
+		}
+		return new MappedPublicKeyRing(file, cacheSize);
+	}
+	
+	/**
+	 * Writes keys as an indexed public keyring file. The file is replaced atomically, so keyrings which have the
+	 * old file open keep reading it and a crash leaves either the old or the new file.
+	 */
+	static void write(Map<Integer, PaillierPublicKey> keyRing, Path file) throws IOException
+	{
+		int[]    userIds = keyRing.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+		byte[][] records = new byte[userIds.length][];
+		
+		for (int i = 0; i < userIds.length; i++)
+		{
+			records[i] = encode(keyRing.get(userIds[i]));
+		}
+		PaillierPrivateKeyRing.writeAtomically(file, out ->
+		{
+			long offset = 0;
+			
+			out.writeInt(INDEX_MAGIC);
+			out.writeByte(INDEX_VERSION);
+			out.writeInt(userIds.length);
+			for (int i = 0; i < userIds.length; i++)
+			{
+				out.writeInt(userIds[i]);
+				out.writeLong(offset);
+				out.writeInt(records[i].length);
+				offset += records[i].length;
+			}
+			for (byte[] record : records)
+			{
+				out.write(record);
+			}
+		});
+	}
+	
+	/**
+	 * Returns the key of a user, from the cache or else built from its record.
+	 *
+	 * @param userId the user id
+	 * @return the public key of the user, null if the keyring has none
+	 */
+	@Nullable
+	public PaillierPublicKey get(int userId)
+	{
+		synchronized (cache)
+		{
+			PaillierPublicKey pk = cache.get(userId);
+			
+			if (pk != null)
+			{
+				hits++;
+				return pk;
+			}
+			misses++;
+		}
+		int entry = find(userId);
+		
+		if (entry < 0)
+		{
+			return null;
+		}
+		PaillierPublicKey pk = decode(read(index.getLong(entry + 4), index.getInt(entry + 12)));
+		
+		synchronized (cache)
+		{
+			cache.put(userId, pk);
+		}
+		return pk;
+	}
+	
+	public boolean contains(int userId)
+	{
+		return find(userId) >= 0;
+	}
+	
+	public List<Integer> keys()
+	{
+		List<Integer> userIds = new ArrayList<>(size);
+		
+		for (int i = 0; i < size; i++)
+		{
+			userIds.add(index.getInt(ENTRY_BYTES * i));
+		}
+		return userIds;
+	}
+	
+	/**
+	 * Copies the keys of some users into an in-memory keyring. Users without a key are left out.
+	 */
+	public PaillierPublicKeyRing slice(List<Integer> userIds)
+	{
+		PaillierPublicKeyRing pkRingNew = new PaillierPublicKeyRing();
+		
+		for (Integer userId : userIds)
+		{
+			PaillierPublicKey pk = get(userId);
+			
+			if (pk != null)
+			{
+				pkRingNew.put(userId, pk);
+			}
+		}
+		return pkRingNew;
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	public int getCacheSize()
+	{
+		return cacheSize;
+	}
+	
+	/**
+	 * @return the number of keys answered from the cache
+	 */
+	public long getHits()
+	{
+		synchronized (cache)
+		{
+			return hits;
+		}
+	}
+	
+	/**
+	 * @return the number of keys that were not cached, including the ones of unknown users
+	 */
+	public long getMisses()
+	{
+		synchronized (cache)
+		{
+			return misses;
+		}
+	}
+	
+	/**
+	 * Closes the file. The mapping itself is released once the keyring is garbage collected.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		synchronized (cache)
+		{
+			cache.clear();
+		}
+		channel.close();
+	}
+	
+	/**
+	 * @return the position of the index entry of a user, -1 if there is none
+	 */
+	private int find(int userId)
+	{
+		int low  = 0;
+		int high = size - 1;
+		
+		while (low <= high)
+		{
+			int mid   = (low + high) >>> 1;
+			int midId = index.getInt(ENTRY_BYTES * mid);
+			
+			if (midId < userId)
+			{
+				low = mid + 1;
+			}
+			else if (midId > userId)
+			{
+				high = mid - 1;
+			}
+			else
+			{
+				return ENTRY_BYTES * mid;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Copies a record out of the mapped segments, a record may span two segments.
+	 */
+	private byte[] read(long offset, int length)
+	{
+		byte[] record = new byte[length];
+		int    copied = 0;
+		
+		while (copied < length)
+		{
+			long       position = offset + copied;
+			ByteBuffer segment  = segments[(int) (position / SEGMENT_BYTES)].duplicate();
+			
+			segment.position((int) (position % SEGMENT_BYTES));
+			
+			int chunk = Math.min(length - copied, segment.remaining());
+			
+			segment.get(record, copied, chunk);
+			copied += chunk;
+		}
+		return record;
+	}
+	
+	private static byte[] encode(PaillierPublicKey pk)
+	{
+		byte[] modulus = pk.getModulus().toByteArray();
+		byte[] base    = pk.hasFixedBaseObfuscation() ? pk.getObfuscationBase().toByteArray() : new byte[0];
+		
+		return ByteBuffer.allocate(4 + modulus.length + 4 + base.length + 4)
+				.putInt(modulus.length)
+				.put(modulus)
+				.putInt(base.length)
+				.put(base)
+				.putInt(pk.getObfuscationExponentLength())
+				.array();
+	}
+	
+	private PaillierPublicKey decode(byte[] record)
+	{
+		ByteBuffer buffer = ByteBuffer.wrap(record);
+		
+		try
+		{
+			byte[] modulus = new byte[buffer.getInt()];
+			
+			buffer.get(modulus);
+			
+			byte[] base = new byte[buffer.getInt()];
+			
+			buffer.get(base);
+			
+			int exponentLength = buffer.getInt();
+			
+			return base.length == 0
+			       ? new PaillierPublicKey(new BigInteger(modulus))
+			       : new PaillierPublicKey(new BigInteger(modulus), new BigInteger(base), exponentLength);
+		}
+		catch (RuntimeException e)
+		{
+			throw new PaillierRuntimeException("Corrupt key record in " + file + ".", e);
+		}
+	}
+}
\ No newline at end of file
@@ -156,6 +156,29 @@ public class MockPaillierContext extends PaillierContext {
     return new EncryptedNumber(this, result.mod(getPublicKey().getModulus()), exponent);
   }
   
+  /**
+   * Performs "mock" linear combination of {@code EncryptedNumber}s with {@code EncodedNumber} weights.
+   *
+   * @param ciphertexts the {@code EncryptedNumber}s to combine.
+   * @param weights the {@code EncodedNumber} weights, one per ciphertext.
+   * @return the "mock" linear combination.
+   * @throws PaillierContextMismatchException if any operand's mock context is not the same as this mock context.
+   */
+  public EncryptedNumber linearCombination(EncryptedNumber[] ciphertexts, EncodedNumber[] weights)
+      throws PaillierContextMismatchException {
+    if (ciphertexts.length != weights.length) {
+      throw new IllegalArgumentException("ciphertexts and weights must have the same length");
+    }
+    if (ciphertexts.length == 0) {
+      return encrypt(BigInteger.ZERO);
+    }
+    EncryptedNumber result = multiply(ciphertexts[0], weights[0]);
+    for (int i = 1; i < ciphertexts.length; i++) {
+      result = add(result, multiply(ciphertexts[i], weights[i]));
+    }
+    return result;
+  }
+  
   @Override
   public boolean equals(Object o) {
     if (o == this) {
@@ -0,0 +1,21 @@
+package com.tudelft.paillier;
+
+/**
+ * The ways in which a {@code PaillierContext} can obfuscate ciphertexts.
+ */
+public enum ObfuscationMode {
+
+  /**
+   * Multiplies the ciphertext with <code>r<sup>n</sup> mod n<sup>2</sup></code> for a fresh, full
+   * length random <code>r</code>. This is the textbook Paillier obfuscation.
+   */
+  FULL_EXPONENT,
+
+  /**
+   * Multiplies the ciphertext with <code>h<sup>s</sup> mod n<sup>2</sup></code>, where
+   * <code>h = x<sup>n</sup> mod n<sup>2</sup></code> is a base fixed at key creation and
+   * <code>s</code> is a short random exponent. Requires a public key with a fixed obfuscation base,
+   * see {@link PaillierPublicKey#withFixedBaseObfuscation(int)}.
+   */
+  FIXED_BASE
+}
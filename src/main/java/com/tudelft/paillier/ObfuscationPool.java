@@ -0,0 +1,30 @@
+package com.tudelft.paillier;
+
+import java.math.BigInteger;
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of precomputed obfuscation factors (<code>r<sup>n</sup> mod n<sup>2</sup></code>),
+ * see {@link PaillierPublicKey#enableObfuscationPool(int, int, int)}.
+ *
+ * The pool is filled by background worker threads. Whenever the number of pooled factors drops
+ * to the {@code lowWatermark} a refill is triggered, and the workers keep computing factors until
+ * the pool holds {@code highWatermark} of them. Taking a factor never blocks: if the pool is
+ * empty, {@link #take()} returns {@code null} and the caller is expected to compute the factor
+ * inline.
+ */
+public final class ObfuscationPool extends PrecomputedPool {
+
+  /**
+   * Constructs and starts a new obfuscation pool.
+   *
+   * @param factory computes a fresh obfuscation factor.
+   * @param lowWatermark the pool size at or below which a refill is triggered.
+   * @param highWatermark the capacity of the pool.
+   * @param threads the number of background worker threads.
+   * @throws IllegalArgumentException if the watermarks or the number of threads are invalid.
+   */
+  public ObfuscationPool(Supplier<BigInteger> factory, int lowWatermark, int highWatermark, int threads) {
+    super(factory, lowWatermark, highWatermark, threads, "paillier-obfuscation-pool");
+  }
+}
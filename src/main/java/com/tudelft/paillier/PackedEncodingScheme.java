@@ -0,0 +1,425 @@
+package com.tudelft.paillier;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import com.tudelft.paillier.util.BigIntegerUtil;
+import com.tudelft.paillier.util.HashChain;
+
+/**
+ * An encoding scheme that packs many small signed integers into a single plaintext.
+ *
+ * The plaintext is divided into {@code slots} slots of {@code slotBits + headroomBits} bits each.
+ * A vector of values <code>v<sub>0</sub>, ..., v<sub>k-1</sub></code> is encoded as the signed
+ * integer <code>sum(v<sub>i</sub> * 2<sup>i * width</sup>)</code>, where {@code width} is the slot
+ * width. Since this is an ordinary integer, the homomorphic operations of {@link PaillierContext}
+ * act slot-wise:
+ * <ul>
+ *   <li>adding two encrypted vectors adds their slots,</li>
+ *   <li>multiplying an encrypted vector with a plaintext scalar, encoded with {@link #encode(long)},
+ *   multiplies every slot with the scalar.</li>
+ * </ul>
+ *
+ * Values are encoded from the symmetric range
+ * <code>(-2<sup>slotBits-1</sup>, 2<sup>slotBits-1</sup>)</code>, the remaining
+ * {@code headroomBits} of every slot absorb the growth of the values through these operations.
+ * A result is decoded correctly as long as every slot stays within
+ * <code>(-2<sup>width-1</sup>, 2<sup>width-1</sup>)</code>; an overflowing slot corrupts its
+ * neighbour and cannot be detected reliably. The range is symmetric so that the packed integer stays
+ * below <code>2<sup>slots * width - 1</sup></code> in magnitude even if every slot holds an extreme:
+ * a slot of <code>-2<sup>width-1</sup></code> would borrow from the slot above it, which the top slot
+ * cannot.
+ *
+ * Only integers are supported, all {@code EncodedNumber}s of this scheme have exponent 0. A single
+ * number is encoded into the lowest slot, which makes it usable as a scalar as well.
+ *
+ * Note you can create a packed PaillierContext directly from
+ * {@link PaillierPublicKey#createPackedContext(int, int)}.
+ */
+public class PackedEncodingScheme implements EncodingScheme {
+
+  /**
+   * The number of bits available for an encoded value, including the sign.
+   */
+  private final int slotBits;
+
+  /**
+   * The number of bits per slot reserved for the growth of the values.
+   */
+  private final int headroomBits;
+
+  /**
+   * The number of bits per slot, {@code slotBits + headroomBits}.
+   */
+  private final int slotWidth;
+
+  /**
+   * The number of slots in a plaintext.
+   */
+  private final int slots;
+
+  /**
+   * The smallest value that can be encoded into a slot, {@code -maxSlotValue}.
+   */
+  private final long minSlotValue;
+
+  /**
+   * The largest value that can be encoded into a slot.
+   */
+  private final long maxSlotValue;
+
+  /**
+   * The maximum {@code value} of the {@code EncodedNumber} that can be encrypted using
+   * the associated {@code publicKey}.
+   */
+  private final BigInteger maxEncoded;
+
+  /**
+   * The minimum {@code value} of the {@code EncodedNumber} that can be encrypted using
+   * the associated {@code publicKey}.
+   */
+  private final BigInteger minEncoded;
+
+  private final PaillierContext context;
+
+  /**
+   * Constructs a packed encoding scheme. The number of slots is the largest number that fits into
+   * the plaintext space of the {@code context}'s public key.
+   *
+   * @param context associated with this encoding scheme.
+   * @param slotBits the number of bits available for an encoded value, including the sign. Must be
+   *                 between 2 and 64.
+   * @param headroomBits the number of additional bits per slot, must be non-negative.
+   * @throws IllegalArgumentException if {@code slotBits} or {@code headroomBits} is invalid, or if
+   * not a single slot fits into the plaintext space.
+   */
+  public PackedEncodingScheme(PaillierContext context, int slotBits, int headroomBits) {
+    if (slotBits < 2 || slotBits > Long.SIZE) {
+      throw new IllegalArgumentException("slotBits must be between 2 and 64");
+    }
+    if (headroomBits < 0) {
+      throw new IllegalArgumentException("headroomBits must be non-negative");
+    }
+    this.context = context;
+    this.slotBits = slotBits;
+    this.headroomBits = headroomBits;
+    this.slotWidth = slotBits + headroomBits;
+    // a packed integer has magnitude below 2^(slots * slotWidth - 1), keep it below modulus / 2
+    this.slots = (context.getPublicKey().getModulus().bitLength() - 1) / slotWidth;
+    if (slots < 1) {
+      throw new IllegalArgumentException("A slot must fit into the plaintext space");
+    }
+    this.maxSlotValue = (1L << (slotBits - 1)) - 1;
+    this.minSlotValue = -maxSlotValue;
+    this.maxEncoded = BigInteger.ONE.shiftLeft(getPrecision() - 1).subtract(BigInteger.ONE);
+    this.minEncoded = context.getPublicKey().getModulus().subtract(maxEncoded);
+  }
+
+  /**
+   * @return the number of bits available for an encoded value, including the sign.
+   */
+  public int getSlotBits() {
+    return slotBits;
+  }
+
+  /**
+   * @return the number of bits per slot reserved for the growth of the values.
+   */
+  public int getHeadroomBits() {
+    return headroomBits;
+  }
+
+  /**
+   * @return the number of bits per slot.
+   */
+  public int getSlotWidth() {
+    return slotWidth;
+  }
+
+  /**
+   * @return the number of slots in a plaintext.
+   */
+  public int getSlots() {
+    return slots;
+  }
+
+  /**
+   * Encodes up to {@code slots} values into a single {@code EncodedNumber}, {@code values[i]} is
+   * placed into slot {@code i}. Unused slots are zero.
+   *
+   * @param values the values to be encoded.
+   * @return the encoding result.
+   * @throws EncodeException if there are more values than slots, or if a value is not in the range
+   * <code>(-2<sup>slotBits-1</sup>, 2<sup>slotBits-1</sup>)</code>.
+   */
+  public EncodedNumber encode(long[] values) throws EncodeException {
+    if (values == null) {
+      throw new EncodeException("cannot encode 'null'");
+    }
+    if (values.length > slots) {
+      throw new EncodeException("Cannot encode " + values.length + " values into " + slots + " slots.");
+    }
+    BigInteger packed = BigInteger.ZERO;
+    for (int i = values.length - 1; i >= 0; i--) {
+      if (values[i] < minSlotValue || values[i] > maxSlotValue) {
+        throw new EncodeException("Input value cannot be encoded into a slot of " + slotBits + " bits.");
+      }
+      packed = packed.shiftLeft(slotWidth).add(BigInteger.valueOf(values[i]));
+    }
+    return encodePacked(packed);
+  }
+
+  /**
+   * Decodes all slots of an {@code EncodedNumber}.
+   *
+   * @param encoded the {@code EncodedNumber} to be decoded.
+   * @return the values of all {@code slots} slots.
+   * @throws DecodeException if the {@code encoded} cannot be decoded, or if a slot does not fit into
+   * a {@code long}.
+   */
+  public long[] decodeLongs(EncodedNumber encoded) throws DecodeException {
+    context.checkSameContext(encoded);
+    return decodeLongs(encoded.getValue(), encoded.getExponent());
+  }
+
+  /**
+   * Decodes all slots of a raw encoded {@code value}, without wrapping it in an
+   * {@code EncodedNumber} first. The value is assumed to be encoded with this EncodingScheme,
+   * no context check is done.
+   *
+   * @param value the encoded value, e.g. a decrypted plaintext.
+   * @param exponent the exponent of the encoded value.
+   * @return the values of all {@code slots} slots.
+   * @throws DecodeException if the {@code value} cannot be decoded, or if a slot does not fit into
+   * a {@code long}.
+   */
+  public long[] decodeLongs(BigInteger value, int exponent) throws DecodeException {
+    BigInteger rest = decodeBigInteger(value, exponent);
+    BigInteger mask = BigInteger.ONE.shiftLeft(slotWidth).subtract(BigInteger.ONE);
+    BigInteger half = BigInteger.ONE.shiftLeft(slotWidth - 1);
+    long[] values = new long[slots];
+    for (int i = 0; i < slots; i++) {
+      // the slots are balanced digits in [-2^(width-1), 2^(width-1))
+      BigInteger digit = rest.and(mask);
+      if (digit.compareTo(half) >= 0) {
+        digit = digit.subtract(mask).subtract(BigInteger.ONE);
+      }
+      if (digit.bitLength() >= Long.SIZE) {
+        throw new DecodeException("Decoded slot cannot be represented as long.");
+      }
+      values[i] = digit.longValue();
+      rest = rest.subtract(digit).shiftRight(slotWidth);
+    }
+    return values;
+  }
+
+  public int getBase() {
+    return 2;
+  }
+
+  public boolean isSigned() {
+    return true;
+  }
+
+  /**
+   * @return the number of plaintext bits covered by the slots.
+   */
+  public int getPrecision() {
+    return slots * slotWidth;
+  }
+
+  public BigInteger getMaxEncoded() {
+    return maxEncoded;
+  }
+
+  public BigInteger getMinEncoded() {
+    return minEncoded;
+  }
+
+  public BigInteger getMaxSignificand() {
+    return maxEncoded;
+  }
+
+  public BigInteger getMinSignificand() {
+    return maxEncoded.negate();
+  }
+
+  public boolean isValid(EncodedNumber encoded) {
+    if (!context.equals(encoded.getContext())) {
+      return false;
+    }
+    return encoded.getValue().compareTo(maxEncoded) <= 0 || encoded.getValue().compareTo(minEncoded) >= 0;
+  }
+
+  /**
+   * Encodes a {@code BigInteger} as a packed integer with exponent 0.
+   *
+   * @param value the {@code BigInteger} to be encoded.
+   * @return the encoding result.
+   * @throws EncodeException if the {@code value} is not valid.
+   */
+  public EncodedNumber encode(BigInteger value) throws EncodeException {
+    if (value == null) {
+      throw new EncodeException("cannot encode 'null'");
+    }
+    return encodePacked(value);
+  }
+
+  /**
+   * Encodes a {@code double} with an integral value. Throws EncodeException for all other values,
+   * since this EncodingScheme supports integers only.
+   *
+   * @param value the {@code double} to be encoded.
+   * @return the encoding result.
+   * @throws EncodeException if the {@code value} is not an integer.
+   */
+  public EncodedNumber encode(double value) throws EncodeException {
+    if (Double.isInfinite(value) || Double.isNaN(value) || value != Math.rint(value)) {
+      throw new EncodeException("Input value cannot be encoded using this EncodingScheme.");
+    }
+    return encode(new BigDecimal(value).toBigInteger());
+  }
+
+  public EncodedNumber encode(double value, int maxExponent) throws EncodeException {
+    return encode(value);
+  }
+
+  public EncodedNumber encode(double value, double precision) throws EncodeException {
+    return encode(value);
+  }
+
+  public EncodedNumber encode(long value) throws EncodeException {
+    return encode(BigInteger.valueOf(value));
+  }
+
+  public EncodedNumber encode(BigDecimal value) throws EncodeException {
+    return encode(value, BIG_DECIMAL_ENCODING_PRECISION);
+  }
+
+  /**
+   * Encodes a {@code BigDecimal} with an integral value. Throws EncodeException for all other
+   * values, since this EncodingScheme supports integers only.
+   *
+   * @param value the {@code BigDecimal} to be encoded.
+   * @param precision ignored, integers are encoded exactly.
+   * @return the encoding result.
+   * @throws EncodeException if the {@code value} is not an integer.
+   */
+  public EncodedNumber encode(BigDecimal value, int precision) throws EncodeException {
+    if (value == null) {
+      throw new EncodeException("cannot encode 'null'");
+    }
+    try {
+      return encode(value.toBigIntegerExact());
+    } catch (ArithmeticException e) {
+      throw new EncodeException("Input value cannot be encoded using this EncodingScheme.");
+    }
+  }
+
+  public int signum(EncodedNumber number) {
+    if (number.value.signum() == 0) {
+      return 0;
+    }
+    BigInteger halfModulus = context.getPublicKey().getModulus().shiftRight(1);
+    return number.value.compareTo(halfModulus) > 0 ? -1 : 1;
+  }
+
+  /**
+   * Decodes the whole plaintext as a single integer. Use {@link #decodeLongs(EncodedNumber)}
+   * to decode the individual slots.
+   *
+   * @param encoded the {@code EncodedNumber} to be decoded.
+   * @return the decoding result.
+   * @throws DecodeException if the {@code encoded} cannot be decoded.
+   */
+  public BigInteger decodeBigInteger(EncodedNumber encoded) throws DecodeException {
+    context.checkSameContext(encoded);
+    return decodeBigInteger(encoded.getValue(), encoded.getExponent());
+  }
+
+  private BigInteger decodeBigInteger(BigInteger value, int exponent) throws DecodeException {
+    if (exponent != 0) {
+      throw new DecodeException("Packed numbers must have exponent 0.");
+    }
+    if (value.compareTo(context.getPublicKey().getModulus()) > 0) {
+      throw new DecodeException("The significand of the encoded number is corrupted");
+    }
+    if (value.compareTo(maxEncoded) <= 0) {
+      return value;
+    }
+    if (value.compareTo(minEncoded) >= 0) {
+      return value.subtract(context.getPublicKey().getModulus());
+    }
+    throw new DecodeException("Detected overflow");
+  }
+
+  public double decodeDouble(EncodedNumber encoded) throws DecodeException {
+    context.checkSameContext(encoded);
+    return decodeDouble(encoded.getValue(), encoded.getExponent());
+  }
+
+  public double decodeDouble(BigInteger value, int exponent) throws DecodeException {
+    double decoded = decodeBigInteger(value, exponent).doubleValue();
+    if (Double.isInfinite(decoded)) {
+      throw new DecodeException("Decoded value cannot be represented as double.");
+    }
+    return decoded;
+  }
+
+  public long decodeLong(EncodedNumber encoded) throws DecodeException {
+    context.checkSameContext(encoded);
+    return decodeLong(encoded.getValue(), encoded.getExponent());
+  }
+
+  public long decodeLong(BigInteger value, int exponent) throws DecodeException {
+    BigInteger decoded = decodeBigInteger(value, exponent);
+    if (BigIntegerUtil.less(decoded, BigIntegerUtil.LONG_MIN_VALUE) ||
+            BigIntegerUtil.greater(decoded, BigIntegerUtil.LONG_MAX_VALUE)) {
+      throw new DecodeException("Decoded value cannot be represented as long.");
+    }
+    return decoded.longValue();
+  }
+
+  public BigDecimal decodeBigDecimal(EncodedNumber encoded) throws DecodeException {
+    return decodeBigDecimal(encoded, BIG_DECIMAL_ENCODING_PRECISION);
+  }
+
+  public BigDecimal decodeBigDecimal(EncodedNumber encoded, int precision) throws DecodeException {
+    return new BigDecimal(decodeBigInteger(encoded));
+  }
+
+  /**
+   * Packed numbers always have exponent 0, so they never need rescaling. The factor is returned
+   * for completeness, applying it shifts the slots.
+   */
+  public BigInteger getRescalingFactor(int expDiff) {
+    return BigInteger.ONE.shiftLeft(expDiff);
+  }
+
+  private EncodedNumber encodePacked(BigInteger value) throws EncodeException {
+    if (value.abs().compareTo(maxEncoded) > 0) {
+      throw new EncodeException("Input value cannot be encoded.");
+    }
+    if (value.signum() < 0) {
+      value = value.add(context.getPublicKey().getModulus());
+    }
+    return new EncodedNumber(context, value, 0);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (o == null || o.getClass() != PackedEncodingScheme.class) {
+      return false;
+    }
+    PackedEncodingScheme encoding = (PackedEncodingScheme) o;
+    return slotBits == encoding.slotBits && headroomBits == encoding.headroomBits;
+  }
+
+  @Override
+  public int hashCode() {
+    return new HashChain().chain(slotBits).chain(headroomBits).hashCode();
+  }
+}
@@ -16,6 +16,7 @@ package com.tudelft.paillier;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.function.Function;
 
 import com.tudelft.paillier.util.BigIntegerUtil;
 import com.tudelft.paillier.util.HashChain;
@@ -45,6 +46,9 @@ import com.tudelft.paillier.util.HashChain;
  *     <code>(modulus - 2<sup>precision</sup>)</code> invalid encoded numbers
  *     than can be used to (non-deterministically) detect overflows.
  *   </li>
+ *   <li>
+ *     An <code>ObfuscationMode</code> that denotes how ciphertexts are obfuscated.
+ *   </li>
  * </ul>
  *
  * PaillierContext defines methods:
@@ -78,6 +82,11 @@ public class PaillierContext {
    */
   private final EncodingScheme encoding;
 
+  /**
+   * The way this PaillierContext obfuscates ciphertexts.
+   */
+  private final ObfuscationMode obfuscationMode;
+
   
   /**
    * Constructs a Paillier context using the  {@code DEFAULT_BASE}.
@@ -102,22 +111,83 @@ public class PaillierContext {
    * @param base to denote the selected base used for encoding, the value must be greater than or equal to 2.
    */
   public PaillierContext(PaillierPublicKey publicKey, boolean signed, int precision, int base) {
+    this(publicKey, signed, precision, base, ObfuscationMode.FULL_EXPONENT);
+  }
+
+  /**
+   * Constructs a Paillier context with a specific obfuscation mode.
+   *
+   * @param publicKey associated with this PaillierContext.
+   * @param signed to denote whether this PaillierContext supports signed or unsigned numbers.
+   * @param precision to denote the number of bits used to represent valid numbers.
+   * @param base to denote the selected base used for encoding, the value must be greater than or equal to 2.
+   * @param obfuscationMode to denote how ciphertexts are obfuscated.
+   * @throws IllegalArgumentException if {@code obfuscationMode} is not supported by {@code publicKey}.
+   */
+  public PaillierContext(PaillierPublicKey publicKey, boolean signed, int precision, int base,
+                         ObfuscationMode obfuscationMode) {
     if (publicKey == null) {
       throw new NullPointerException("publicKey must not be null");
     }
     this.publicKey = publicKey;
+    this.obfuscationMode = checkObfuscationMode(publicKey, obfuscationMode);
     this.encoding = new StandardEncodingScheme(this, signed, precision, base);
   }
   
   
   public PaillierContext(PaillierPublicKey publicKey, EncodingScheme encoding) {
+    this(publicKey, encoding, ObfuscationMode.FULL_EXPONENT);
+  }
+
+  public PaillierContext(PaillierPublicKey publicKey, EncodingScheme encoding, ObfuscationMode obfuscationMode) {
     if (publicKey == null) {
       throw new NullPointerException("publicKey must not be null");
     }
     this.publicKey = publicKey;
+    this.obfuscationMode = checkObfuscationMode(publicKey, obfuscationMode);
     this.encoding = encoding;
   }
 
+  /**
+   * Constructs a Paillier context with an encoding scheme that is bound to the new context, e.g.
+   * <code>new PaillierContext(publicKey, context -&gt; new PackedEncodingScheme(context, 32, 16))</code>.
+   *
+   * @param publicKey associated with this PaillierContext.
+   * @param encodingFactory creates the encoding scheme for this PaillierContext.
+   */
+  public PaillierContext(PaillierPublicKey publicKey, Function<PaillierContext, EncodingScheme> encodingFactory) {
+    this(publicKey, encodingFactory, ObfuscationMode.FULL_EXPONENT);
+  }
+
+  /**
+   * Constructs a Paillier context with an encoding scheme that is bound to the new context and a
+   * specific obfuscation mode.
+   *
+   * @param publicKey associated with this PaillierContext.
+   * @param encodingFactory creates the encoding scheme for this PaillierContext.
+   * @param obfuscationMode to denote how ciphertexts are obfuscated.
+   * @throws IllegalArgumentException if {@code obfuscationMode} is not supported by {@code publicKey}.
+   */
+  public PaillierContext(PaillierPublicKey publicKey, Function<PaillierContext, EncodingScheme> encodingFactory,
+                         ObfuscationMode obfuscationMode) {
+    if (publicKey == null) {
+      throw new NullPointerException("publicKey must not be null");
+    }
+    this.publicKey = publicKey;
+    this.obfuscationMode = checkObfuscationMode(publicKey, obfuscationMode);
+    this.encoding = encodingFactory.apply(this);
+  }
+
+  private static ObfuscationMode checkObfuscationMode(PaillierPublicKey publicKey, ObfuscationMode obfuscationMode) {
+    if (obfuscationMode == null) {
+      throw new NullPointerException("obfuscationMode must not be null");
+    }
+    if (obfuscationMode == ObfuscationMode.FIXED_BASE && !publicKey.hasFixedBaseObfuscation()) {
+      throw new IllegalArgumentException("publicKey has no fixed obfuscation base");
+    }
+    return obfuscationMode;
+  }
+
   /**
    * @return public key of this PaillierContext.
    */
@@ -132,6 +202,13 @@ public class PaillierContext {
     return encoding;
   }
 
+  /**
+   * @return the obfuscation mode of this PaillierContext.
+   */
+  public ObfuscationMode getObfuscationMode() {
+    return obfuscationMode;
+  }
+
   /**
    * @return encoding base used in this PaillierContext.
    */
@@ -450,7 +527,9 @@ public class PaillierContext {
   public EncryptedNumber obfuscate(EncryptedNumber encrypted) {
     checkSameContext(encrypted);
     
-    final BigInteger obfuscated = publicKey.raw_obfuscate(encrypted.ciphertext);
+    final BigInteger obfuscated = obfuscationMode == ObfuscationMode.FIXED_BASE
+                                  ? publicKey.raw_obfuscate_fixed_base(encrypted.ciphertext)
+                                  : publicKey.raw_obfuscate(encrypted.ciphertext);
     return new EncryptedNumber(this, obfuscated, encrypted.getExponent(), true);
   }
 
@@ -711,6 +790,10 @@ public class PaillierContext {
   /**
    * Multiplies an EncyptedNumber with an {@code EncodedNumber}.
    *
+   * A negative {@code operand2} is applied as the inverse of {@code operand1} raised to the
+   * absolute value of {@code operand2}, so that the cost of the exponentiation depends on the
+   * magnitude of the plaintext rather than on the length of the modulus.
+   *
    * @param operand1 an {@code EncryptedNumber}.
    * @param operand2 an {@code EncodedNumber}.
    * @return the multiplication result.
@@ -721,13 +804,70 @@ public class PaillierContext {
           throws PaillierContextMismatchException {
     checkSameContext(operand1);
     checkSameContext(operand2);
-    final BigInteger value1 = operand1.ciphertext;
-    final BigInteger value2 = operand2.getValue();
+    BigInteger value1 = operand1.ciphertext;
+    BigInteger value2 = operand2.getValue();
+    if (signum(operand2) < 0) {
+      // c^(n - k) and (c^-1)^k decrypt to the same value, the latter is far cheaper for small k
+      value1 = value1.modInverse(publicKey.getModulusSquared());
+      value2 = publicKey.getModulus().subtract(value2);
+    }
     final BigInteger result = publicKey.raw_multiply(value1, value2);
     final int exponent = operand1.getExponent() + operand2.getExponent();
     return new EncryptedNumber(this, result, exponent);
   }
 
+  /**
+   * Computes the linear combination <code>sum(weights[i] * ciphertexts[i])</code> of
+   * {@code EncryptedNumber}s with {@code EncodedNumber} weights.
+   *
+   * The exponents of all terms are aligned once, on the plaintext weights, and the product
+   * <code>prod(c<sub>i</sub><sup>w<sub>i</sub></sup>) mod n<sup>2</sup></code> is evaluated with a
+   * simultaneous multi-exponentiation, see {@link BigIntegerUtil#multiModPow}. Negative weights
+   * are applied as positive exponents of the inverted ciphertexts, so that small negative weights
+   * stay cheap. This is considerably cheaper than calling {@code multiply} and {@code add} per term.
+   *
+   * @param ciphertexts the {@code EncryptedNumber}s to combine.
+   * @param weights the {@code EncodedNumber} weights, one per ciphertext.
+   * @return the linear combination.
+   * @throws IllegalArgumentException if {@code ciphertexts} and {@code weights} differ in length.
+   * @throws PaillierContextMismatchException if the {@code PaillierContext} of any ciphertext or
+   * weight does not match this {@code PaillierContext}.
+   */
+  public EncryptedNumber linearCombination(EncryptedNumber[] ciphertexts, EncodedNumber[] weights)
+          throws PaillierContextMismatchException {
+    if (ciphertexts.length != weights.length) {
+      throw new IllegalArgumentException("ciphertexts and weights must have the same length");
+    }
+    if (ciphertexts.length == 0) {
+      return encrypt(BigInteger.ZERO);
+    }
+    final BigInteger modulus = publicKey.getModulus();
+    final BigInteger modulusSquared = publicKey.getModulusSquared();
+    int minExponent = Integer.MAX_VALUE;
+    for (int i = 0; i < ciphertexts.length; i++) {
+      checkSameContext(ciphertexts[i]);
+      checkSameContext(weights[i]);
+      minExponent = Math.min(minExponent, ciphertexts[i].getExponent() + weights[i].getExponent());
+    }
+    BigInteger[] bases = new BigInteger[ciphertexts.length];
+    BigInteger[] exponents = new BigInteger[ciphertexts.length];
+    for (int i = 0; i < ciphertexts.length; i++) {
+      BigInteger weight = weights[i].getValue();
+      boolean negative = signum(weights[i]) < 0;
+      if (negative) {
+        weight = modulus.subtract(weight);
+      }
+      int expDiff = ciphertexts[i].getExponent() + weights[i].getExponent() - minExponent;
+      if (expDiff > 0) {
+        weight = weight.multiply(getRescalingFactor(expDiff)).mod(modulus);
+      }
+      bases[i] = negative ? ciphertexts[i].ciphertext.modInverse(modulusSquared) : ciphertexts[i].ciphertext;
+      exponents[i] = weight;
+    }
+    final BigInteger result = BigIntegerUtil.multiModPow(bases, exponents, modulusSquared);
+    return new EncryptedNumber(this, result, minExponent);
+  }
+
   /**
    * Multiplies an {@code EncodedNumber} with an {@code EncryptedNumber}.
    *
@@ -812,7 +952,7 @@ public class PaillierContext {
 
   @Override
   public int hashCode() {
-    return new HashChain().chain(publicKey).chain(encoding).hashCode();
+    return new HashChain().chain(publicKey).chain(encoding).chain(obfuscationMode).hashCode();
   }
 
   @Override
@@ -825,12 +965,14 @@ public class PaillierContext {
     }
     PaillierContext context = (PaillierContext) o;
     return publicKey.equals(context.publicKey) &&
-            encoding.equals(context.encoding);
+            encoding.equals(context.encoding) &&
+            obfuscationMode == context.obfuscationMode;
   }
 
   public boolean equals(PaillierContext o) {
     return o == this || (o != null &&
             publicKey.equals(o.publicKey) &&
-            encoding.equals(o.encoding));
+            encoding.equals(o.encoding) &&
+            obfuscationMode == o.obfuscationMode);
   }
 }
@@ -0,0 +1,309 @@
+package com.tudelft.paillier;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A factory for Paillier keypairs of a fixed modulus length.
+ *
+ * The factory searches for prime candidates on several worker threads at once and combines the
+ * first two that yield a modulus of the requested length, whereas {@link PaillierPrivateKey#create(int)}
+ * searches on the calling thread. A factory owns its threads until {@link #shutdown()} is called.
+ *
+ * Optionally, the factory keeps a bounded pool of ready-to-use keypairs which is refilled in the
+ * background, so that {@link #create()} returns immediately while the pool is not empty. Keypairs
+ * requested on demand take priority over the refill: while one is being generated, the refill
+ * abandons its search and waits.
+ *
+ * The factory keeps track of:
+ * <ul>
+ *   <li>the current pool depth,</li>
+ *   <li>the number of keypairs generated, both for the pool and on demand,</li>
+ *   <li>the number of keypairs served from the pool and the number generated on demand,</li>
+ *   <li>the time spent generating keypairs.</li>
+ * </ul>
+ *
+ * Examples:
+ * <ul>
+ *   <li>
+ *     <p>To keep 16 2048 bit keypairs ready, using all cores:</p>
+ *     <p><code>PaillierKeyFactory factory = new PaillierKeyFactory(2048, 16);</code></p>
+ *     <p><code>PaillierPrivateKey privateKey = factory.create();</code></p>
+ *   </li>
+ * </ul>
+ */
+public final class PaillierKeyFactory {
+
+  private static final AtomicInteger factoryCount = new AtomicInteger();
+
+  private final int modulusLength;
+
+  private final int threads;
+
+  private final ExecutorService searchers;
+
+  private final BlockingQueue<PaillierPrivateKey> pool;
+
+  private final Thread refiller;
+
+  private final AtomicLong generated = new AtomicLong();
+
+  private final AtomicLong generationNanos = new AtomicLong();
+
+  private final AtomicLong poolHits = new AtomicLong();
+
+  private final AtomicLong poolMisses = new AtomicLong();
+
+  /**
+   * The number of keypairs being generated on demand, guarded by itself for the refill to wait on.
+   */
+  private final AtomicInteger onDemand = new AtomicInteger();
+
+  private volatile boolean running = true;
+
+  /**
+   * Constructs a key factory without a pool, searching for primes on all available cores.
+   *
+   * @param modulusLength the length of the public key modulus. Must be a positive multiple of 8.
+   * @throws IllegalArgumentException on illegal {@code modulusLength}.
+   */
+  public PaillierKeyFactory(int modulusLength) {
+    this(modulusLength, 0);
+  }
+
+  /**
+   * Constructs a key factory searching for primes on all available cores.
+   *
+   * @param modulusLength the length of the public key modulus. Must be a positive multiple of 8.
+   * @param poolCapacity the number of keypairs to keep ready, 0 to disable the pool.
+   * @throws IllegalArgumentException on illegal {@code modulusLength} or {@code poolCapacity}.
+   */
+  public PaillierKeyFactory(int modulusLength, int poolCapacity) {
+    this(modulusLength, poolCapacity, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Constructs a key factory.
+   *
+   * @param modulusLength the length of the public key modulus. Must be a positive multiple of 8.
+   * @param poolCapacity the number of keypairs to keep ready, 0 to disable the pool.
+   * @param threads the number of threads searching for primes.
+   * @throws IllegalArgumentException on illegal {@code modulusLength}, {@code poolCapacity} or
+   * {@code threads}.
+   */
+  public PaillierKeyFactory(int modulusLength, int poolCapacity, int threads) {
+    if (modulusLength < 8 || modulusLength % 8 != 0) {
+      throw new IllegalArgumentException("modulusLength must be a multiple of 8");
+    }
+    if (poolCapacity < 0) {
+      throw new IllegalArgumentException("poolCapacity must be non-negative");
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be positive");
+    }
+    final int id = factoryCount.getAndIncrement();
+    final AtomicInteger threadCount = new AtomicInteger();
+    this.modulusLength = modulusLength;
+    this.threads = threads;
+    this.searchers = Executors.newFixedThreadPool(threads, runnable -> {
+      Thread thread = new Thread(runnable, "paillier-key-factory-" + id + "-" + threadCount.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    });
+    if (poolCapacity > 0) {
+      this.pool = new ArrayBlockingQueue<>(poolCapacity);
+      this.refiller = new Thread(this::refill, "paillier-key-factory-" + id + "-refill");
+      this.refiller.setDaemon(true);
+      this.refiller.start();
+    } else {
+      this.pool = null;
+      this.refiller = null;
+    }
+  }
+
+  /**
+   * Returns a keypair from the pool, or generates one if the pool is empty or disabled.
+   *
+   * @return a Paillier keypair consists of a private key and the corresponding public key.
+   */
+  public PaillierPrivateKey create() {
+    PaillierPrivateKey privateKey = pool == null ? null : pool.poll();
+    if (privateKey != null) {
+      poolHits.incrementAndGet();
+      return privateKey;
+    }
+    if (pool != null) {
+      poolMisses.incrementAndGet();
+    }
+    return generate();
+  }
+
+  /**
+   * Generates a fresh keypair, bypassing the pool. The worker threads search for primes of half
+   * the modulus length until two distinct primes with a product of the right length are found.
+   * A background refill gives way to the search until it is done.
+   *
+   * @return a Paillier keypair consists of a private key and the corresponding public key.
+   * @throws PaillierRuntimeException if the factory is shut down or the search is interrupted.
+   */
+  public PaillierPrivateKey generate() {
+    onDemand.incrementAndGet();
+    try {
+      return generate(false);
+    } finally {
+      synchronized (onDemand) {
+        onDemand.decrementAndGet();
+        onDemand.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Searches for a keypair. A background search gives way to searches on demand: its workers stop
+   * after their current prime candidate and it returns null.
+   */
+  private PaillierPrivateKey generate(boolean background) {
+    if (!running) {
+      throw new PaillierRuntimeException("key factory has been shut down");
+    }
+    final long start = System.nanoTime();
+    final int primeLength = modulusLength / 2;
+    final BlockingQueue<BigInteger> found = new LinkedBlockingQueue<>();
+    final AtomicBoolean done = new AtomicBoolean();
+    try {
+      for (int i = 0; i < threads; i++) {
+        searchers.execute(() -> {
+          SecureRandom random = new SecureRandom();
+          while (!done.get() && running && !(background && onDemand.get() > 0)) {
+            found.add(BigInteger.probablePrime(primeLength, random));
+          }
+        });
+      }
+      List<BigInteger> primes = new ArrayList<>();
+      while (true) {
+        if (background && onDemand.get() > 0) {
+          return null;
+        }
+        BigInteger q = found.poll(100, TimeUnit.MILLISECONDS);
+        if (q == null) {
+          if (!running) {
+            throw new PaillierRuntimeException("key factory has been shut down");
+          }
+          continue;
+        }
+        for (BigInteger p : primes) {
+          BigInteger modulus = p.multiply(q);
+          if (!p.equals(q) && modulus.bitLength() == modulusLength) {
+            done.set(true);
+            PaillierPrivateKey privateKey = new PaillierPrivateKey(new PaillierPublicKey(modulus), p, q);
+            generated.incrementAndGet();
+            generationNanos.addAndGet(System.nanoTime() - start);
+            return privateKey;
+          }
+        }
+        primes.add(q);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new PaillierRuntimeException("key generation was interrupted", e);
+    } catch (RejectedExecutionException e) {
+      throw new PaillierRuntimeException("key factory has been shut down", e);
+    } finally {
+      done.set(true);
+    }
+  }
+
+  /**
+   * Stops the background refill and the prime search threads. Keypairs in the pool are discarded.
+   */
+  public void shutdown() {
+    running = false;
+    if (refiller != null) {
+      refiller.interrupt();
+      pool.clear();
+    }
+    searchers.shutdownNow();
+  }
+
+  /**
+   * @return the length of the public key moduli generated by this factory.
+   */
+  public int getModulusLength() {
+    return modulusLength;
+  }
+
+  /**
+   * @return the number of keypairs currently in the pool.
+   */
+  public int getPoolDepth() {
+    return pool == null ? 0 : pool.size();
+  }
+
+  /**
+   * @return the maximum number of keypairs kept in the pool, 0 if the pool is disabled.
+   */
+  public int getPoolCapacity() {
+    return pool == null ? 0 : pool.size() + pool.remainingCapacity();
+  }
+
+  /**
+   * @return the number of keypairs generated, both for the pool and on demand.
+   */
+  public long getGeneratedKeys() {
+    return generated.get();
+  }
+
+  /**
+   * @return the number of keypairs served from the pool.
+   */
+  public long getPoolHits() {
+    return poolHits.get();
+  }
+
+  /**
+   * @return the number of keypairs generated on demand because the pool was empty, 0 if the pool is
+   * disabled.
+   */
+  public long getPoolMisses() {
+    return poolMisses.get();
+  }
+
+  /**
+   * @return the average wall-clock time to generate a keypair in milliseconds, 0 if none was generated.
+   */
+  public double getAverageGenerationMillis() {
+    long count = generated.get();
+    return count == 0 ? 0 : generationNanos.get() / (count * 1e6);
+  }
+
+  private void refill() {
+    try {
+      while (running) {
+        synchronized (onDemand) {
+          while (onDemand.get() > 0) {
+            onDemand.wait();
+          }
+        }
+        PaillierPrivateKey privateKey = generate(true);
+        if (privateKey != null) {
+          pool.put(privateKey);
+        }
+      }
+    } catch (InterruptedException | PaillierRuntimeException e) {
+      // the factory was shut down
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -15,21 +15,34 @@ import javax.crypto.*;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.PBEKeySpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.Security;
 import java.security.spec.InvalidKeySpecException;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class PaillierPrivateKeyRing
@@ -38,16 +51,40 @@ public class PaillierPrivateKeyRing
 	public static Path keyRingFile  = Paths.get(keyDir + "/sk_ring.pai");
 	public static Path AESKeyFile   = Paths.get(keyDir + "/key.pai");
 	public static Path passHashFile = Paths.get(keyDir + "/pass_hash.pai");
+	public static Path indexFile    = Paths.get(keyDir + "/sk_ring_index.pai");
 	public static int  iterations   = 100000;
 	public static int  PBEKeyLength = 256;
 	
+	private static final int  INDEX_MAGIC   = 0x534b5249;
+	private static final byte INDEX_VERSION = 1;
+	
+	/**
+	 * The position of an encrypted key record in the indexed keyring file.
+	 */
+	private static final class Record
+	{
+		private final long offset;
+		private final int  length;
+		
+		private Record(long offset, int length)
+		{
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+	
 	private transient Map<Integer, PaillierPrivateKey> keyRing;
+	private transient Map<Integer, Record>             records;
+	private transient Path                             recordFile;
+	private transient Map<Integer, Record>             pendingRecords;
+	private transient KeyRingSession                   session;
 	private transient String                           hashKey;
 	private           boolean                          filesExist;
 	
 	public PaillierPrivateKeyRing(String password)
 	{
-		keyRing = new HashMap<>();
+		keyRing = new ConcurrentHashMap<>();
+		records = new ConcurrentHashMap<>();
 		filesExist = false;
 		hashKey = hashFromPassword(password);
 	}
@@ -60,13 +97,15 @@ public class PaillierPrivateKeyRing
 		PaillierPrivateKeyRing that        = new PaillierPrivateKeyRing(keyRingJson, hashKey);
 		
 		this.keyRing = that.keyRing;
+		this.records = that.records;
 		this.hashKey = that.hashKey;
 		this.filesExist = false;
 	}
 	
 	private PaillierPrivateKeyRing(JsonObject keyRingJson, String hashKey)
 	{
-		this.keyRing = new HashMap<>();
+		this.keyRing = new ConcurrentHashMap<>();
+		this.records = new ConcurrentHashMap<>();
 		this.hashKey = hashKey;
 		this.filesExist = true;
 		
@@ -78,9 +117,17 @@ public class PaillierPrivateKeyRing
 		}
 	}
 	
-	public static PaillierPrivateKeyRing loadFromFile(String password) throws IOException
+	/**
+	 * Validates the password of the keyring files and decrypts their AES key, which can then be reused by
+	 * loads and writes until the session expires or is closed.
+	 *
+	 * @param password       the password of the keyring
+	 * @param lifetimeMillis how long the session can be used, {@link Long#MAX_VALUE} for no limit
+	 * @return the unlocked session
+	 */
+	public static KeyRingSession unlock(String password, long lifetimeMillis) throws IOException
 	{
-		Security.addProvider(new BouncyCastleProvider());
+		addProvider();
 		
 		String hashKey = validatePassword(password);
 		
@@ -88,33 +135,302 @@ public class PaillierPrivateKeyRing
 		{
 			throw new PaillierKeyMismatchException("Invalid passphrase, could not decrypt keyring.");
 		}
+		return newSession(hashKey, lifetimeMillis);
+	}
+	
+	/**
+	 * Decrypts the AES key of the keyring files with a password hash, the derived key is wiped afterwards.
+	 */
+	private static KeyRingSession newSession(String hashKey, long lifetimeMillis) throws IOException
+	{
+		addProvider();
+		
+		Triple<Integer, Byte[], Byte[]> hashTriple = KeyRingUtil.hashToTriple(hashKey);
+		byte[]                          passKey    = ArrayUtils.toPrimitive(hashTriple.getRight());
+		
 		try
 		{
-			byte[]        AESKey     = loadAESKey(ArrayUtils.toPrimitive(KeyRingUtil.hashToTriple(hashKey).getRight()));
-			byte[]        bytes      = Files.readAllBytes(keyRingFile);
-			byte[]        iv         = ArrayUtils.subarray(bytes, 0, 16);
-			byte[]        keyRingEnc = ArrayUtils.subarray(bytes, 16, bytes.length);
-			JsonParser    parser     = new JsonParser();
-			SecretKeySpec AESKeySpec = new SecretKeySpec(AESKey, "AES");
-			Cipher        cipher     = Cipher.getInstance("AES/CBC/PKCS7Padding");
-			
-			cipher.init(Cipher.DECRYPT_MODE, AESKeySpec, new IvParameterSpec(iv));
-			
-			String     keyRingStr  = new String(cipher.doFinal(keyRingEnc));
-			JsonObject keyRingJson = (JsonObject) parser.parse(keyRingStr);
+			return new KeyRingSession(hashTriple.getLeft(), loadAESKey(passKey), lifetimeMillis);
+		}
+		catch (InvalidKeyException | IllegalBlockSizeException | BadPaddingException e)
+		{
+			throw new PaillierRuntimeException("Could not load keyring AES key.", e);
+		}
+		finally
+		{
+			Arrays.fill(passKey, (byte) 0);
+		}
+	}
+	
+	/**
+	 * Loads the keyring file, the keyring keeps a session of its own which never expires.
+	 */
+	public static PaillierPrivateKeyRing loadFromFile(String password) throws IOException
+	{
+		return loadFromFile(unlock(password, Long.MAX_VALUE));
+	}
+	
+	/**
+	 * Loads the keyring file without deriving keys from the password again. The keyring keeps only the
+	 * session, its writes fail with an {@link IllegalStateException} once the session is closed or expired.
+	 *
+	 * @param session an open session
+	 * @return the keyring
+	 */
+	public static PaillierPrivateKeyRing loadFromFile(KeyRingSession session) throws IOException
+	{
+		byte[]     keyRingBytes = session.decrypt(Files.readAllBytes(keyRingFile));
+		JsonObject keyRingJson  = (JsonObject) new JsonParser().parse(new String(keyRingBytes));
+		
+		PaillierPrivateKeyRing skRing = new PaillierPrivateKeyRing(keyRingJson, null);
+		
+		skRing.session = session;
+		
+		return skRing;
+	}
+	
+	/**
+	 * Opens the indexed keyring file written by {@link #writeToIndexedFile()}. Only the index of user ids
+	 * is read, every key is read, decrypted and reconstructed when it is first asked for by {@link #get(int)}.
+	 *
+	 * @param password the password the keyring was written with
+	 * @return the keyring, backed by the indexed keyring file
+	 */
+	public static PaillierPrivateKeyRing loadFromIndexedFile(String password) throws IOException
+	{
+		return loadFromIndexedFile(unlock(password, Long.MAX_VALUE));
+	}
+	
+	/**
+	 * Opens the indexed keyring file without deriving keys from the password again. The keyring keeps only
+	 * the session, keys which are first asked for after it was closed or expired cannot be decrypted and
+	 * {@link #get(int)} fails with an {@link IllegalStateException}, as do writes.
+	 *
+	 * @param session an open session
+	 * @return the keyring, backed by the indexed keyring file
+	 */
+	public static PaillierPrivateKeyRing loadFromIndexedFile(KeyRingSession session) throws IOException
+	{
+		Map<Integer, Record> records = new ConcurrentHashMap<>();
+		
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile))))
+		{
+			if (in.readInt() != INDEX_MAGIC || in.readByte() != INDEX_VERSION)
+			{
+				throw new IOException("Not an indexed keyring file: " + indexFile);
+			}
+			int count = in.readInt();
 			
-			return new PaillierPrivateKeyRing(keyRingJson, hashKey);
+			for (int i = 0; i < count; i++)
+			{
+				int userId = in.readInt();
+				
+				records.put(userId, new Record(in.readLong(), in.readInt()));
+			}
 		}
-		catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidAlgorithmParameterException |
-				InvalidKeyException | IllegalBlockSizeException | BadPaddingException e) { e.printStackTrace(); }
+		PaillierPrivateKeyRing skRing = new PaillierPrivateKeyRing(new JsonObject(), null);
 		
-		throw new PaillierRuntimeException("Could not load keyring from file.");
+		skRing.records = records;
+		skRing.recordFile = indexFile;
+		skRing.session = session;
+		
+		return skRing;
 	}
 	
+	/**
+	 * Writes the encrypted keyring file. The first write of a new keyring generates the AES key and password
+	 * hash files, the file itself is written next to the keyring file and atomically moved over it.
+	 */
 	public void writeToFile() throws IOException, PaillierKeyMismatchException
 	{
-		Security.addProvider(new BouncyCastleProvider());
+		prepareFiles();
+		
+		byte[] sealed = session().encrypt(serializeKeyRing().toString().getBytes());
+		
+		writeAtomically(keyRingFile, out -> out.write(sealed));
+	}
+	
+	/**
+	 * Writes the keyring with the keys of an unlocked session, which the keyring keeps for later writes
+	 * instead of its password.
+	 *
+	 * @param session an open session of the keyring files
+	 */
+	public void writeToFile(KeyRingSession session) throws IOException, PaillierKeyMismatchException
+	{
+		useSession(session);
+		writeToFile();
+	}
+	
+	/**
+	 * Writes the keyring in the indexed format: a header with the user ids and the positions of their key
+	 * records, followed by the records, every key encrypted on its own. Keys that were never read from the
+	 * indexed file are copied as they are, without decrypting them. Like {@link #writeToFile()} the file is
+	 * replaced atomically, readers see either the old or the new keyring.
+	 */
+	public void writeToIndexedFile() throws IOException, PaillierKeyMismatchException
+	{
+		writeIndexedTempFile();
+		replaceIndexedFile();
+	}
+	
+	/**
+	 * The first half of {@link #writeToIndexedFile()}: writes the indexed keyring next to the indexed file,
+	 * which readers still see unchanged.
+	 */
+	void writeIndexedTempFile() throws IOException, PaillierKeyMismatchException
+	{
+		prepareFiles();
+		
+		KeyRingSession session = session();
+		List<Integer>  userIds = keys();
+		byte[][]       sealed  = new byte[userIds.size()][];
+		
+		Collections.sort(userIds);
+		for (int i = 0; i < sealed.length; i++)
+		{
+			PaillierPrivateKey sk = keyRing.get(userIds.get(i));
+			
+			sealed[i] = sk != null
+			            ? session.encrypt(serializeKey(sk).toString().getBytes(StandardCharsets.UTF_8))
+			            : readRecord(records.get(userIds.get(i)));
+		}
+		Map<Integer, Record> written = new ConcurrentHashMap<>();
+		
+		writeTempFile(indexFile, out ->
+		{
+			long offset = 4 + 1 + 4 + 16L * sealed.length;
+			
+			out.writeInt(INDEX_MAGIC);
+			out.writeByte(INDEX_VERSION);
+			out.writeInt(sealed.length);
+			for (int i = 0; i < sealed.length; i++)
+			{
+				written.put(userIds.get(i), new Record(offset, sealed[i].length));
+				out.writeInt(userIds.get(i));
+				out.writeLong(offset);
+				out.writeInt(sealed[i].length);
+				offset += sealed[i].length;
+			}
+			for (byte[] record : sealed)
+			{
+				out.write(record);
+			}
+		});
+		pendingRecords = written;
+	}
+	
+	/**
+	 * The second half of {@link #writeToIndexedFile()}: moves the file written by
+	 * {@link #writeIndexedTempFile()} over the indexed file, after which the keyring reads its keys from it.
+	 */
+	void replaceIndexedFile() throws IOException
+	{
+		if (pendingRecords == null)
+		{
+			throw new IllegalStateException("No indexed keyring file was written.");
+		}
+		replaceWithTempFile(indexFile);
+		records = pendingRecords;
+		recordFile = indexFile;
+		pendingRecords = null;
+	}
+	
+	/**
+	 * Writes the keyring in the indexed format with the keys of an unlocked session, which the keyring keeps
+	 * for later writes instead of its password.
+	 *
+	 * @param session an open session of the keyring files
+	 */
+	public void writeToIndexedFile(KeyRingSession session) throws IOException, PaillierKeyMismatchException
+	{
+		useSession(session);
+		writeToIndexedFile();
+	}
+	
+	/**
+	 * The contents of a keyring file.
+	 */
+	interface Contents
+	{
+		void write(DataOutputStream out) throws IOException;
+	}
+	
+	/**
+	 * Writes a file next to the given one and atomically moves it over it once it is on disk, so that readers,
+	 * and a crash in between, see either the old or the new file.
+	 */
+	static void writeAtomically(Path file, Contents contents) throws IOException
+	{
+		writeTempFile(file, contents);
+		replaceWithTempFile(file);
+	}
+	
+	private static void writeTempFile(Path file, Contents contents) throws IOException
+	{
+		try (FileOutputStream fos = new FileOutputStream(tempFile(file).toFile());
+		     DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos)))
+		{
+			contents.write(out);
+			out.flush();
+			fos.getFD().sync();
+		}
+	}
+	
+	private static void replaceWithTempFile(Path file) throws IOException
+	{
+		Files.move(tempFile(file), file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+	}
+	
+	private static Path tempFile(Path file)
+	{
+		return Paths.get(file + ".tmp");
+	}
+	
+	/**
+	 * Registers the BouncyCastle provider, which supplies the PKCS7 padding, unless it is registered already.
+	 */
+	static synchronized void addProvider()
+	{
+		if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null)
+		{
+			Security.addProvider(new BouncyCastleProvider());
+		}
+	}
+	
+	private synchronized void useSession(KeyRingSession session)
+	{
+		session.checkOpen();
+		// the session belongs to the existing keyring files, which must not be generated again
+		this.hashKey = null;
+		this.session = session;
+		this.filesExist = true;
+	}
+	
+	/**
+	 * Returns the session of the keyring. A keyring created with a password derives a session from it, which
+	 * never expires, a keyring loaded or written with a session only has that session.
+	 *
+	 * @throws IllegalStateException if the session of the keyring is closed or expired
+	 */
+	synchronized KeyRingSession session() throws IOException
+	{
+		if (session == null)
+		{
+			if (hashKey == null)
+			{
+				throw new IllegalStateException("The keyring has neither a password nor a session.");
+			}
+			session = newSession(hashKey, Long.MAX_VALUE);
+		}
+		session.checkOpen();
 		
+		return session;
+	}
+	
+	private void prepareFiles() throws IOException, PaillierKeyMismatchException
+	{
+		addProvider();
 		if (!filesExist)
 		{
 			File dir = new File("./keys");
@@ -125,6 +441,8 @@ public class PaillierPrivateKeyRing
 			}
 			generateHashFile();
 			generateKeyFile();
+			filesExist = true;
+			session = null;
 		}
 		if (!AESKeyFile.toFile().exists())
 		{
@@ -135,38 +453,38 @@ public class PaillierPrivateKeyRing
 			throw new FileNotFoundException(
 					"password hash file (" + passHashFile + ") not found, keyring file is unrecoverable.");
 		}
-		try
-		{
-			JsonObject       keyRingJson = serializeKeyRing();
-			byte[]           key         = loadAESKey(ArrayUtils.toPrimitive(KeyRingUtil.hashToTriple(hashKey).getRight()));
-			byte[]           iv          = KeyRingUtil.genSalt();
-			SecretKeySpec    AESKeySpec  = new SecretKeySpec(key, "AES");
-			Cipher           cipher      = Cipher.getInstance("AES/CBC/PKCS7Padding");
-			FileOutputStream fos         = new FileOutputStream(keyRingFile.toFile());
-			
-			cipher.init(Cipher.ENCRYPT_MODE, AESKeySpec, new IvParameterSpec(iv));
-			fos.write(iv);
-			fos.write(cipher.doFinal(keyRingJson.toString().getBytes()));
-		}
-		catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidAlgorithmParameterException |
-				InvalidKeyException | IllegalBlockSizeException | BadPaddingException e) { e.printStackTrace(); }
 	}
 	
 	public void put(int userId, PaillierPrivateKey sk)
 	{
 		keyRing.put(userId, sk);
+		records.remove(userId);
 	}
 	
+	/**
+	 * Returns the key of a user. A key of an indexed keyring file is read, decrypted and reconstructed on
+	 * the first call for its user.
+	 *
+	 * @param userId the user id
+	 * @return the private key of the user, null if the keyring has none
+	 */
 	public PaillierPrivateKey get(int userId)
 	{
-		return keyRing.get(userId);
+		PaillierPrivateKey sk = keyRing.get(userId);
+		
+		return sk == null && records.containsKey(userId) ? openRecord(userId) : sk;
 	}
 	
 	public List<Integer> keys()
 	{
-		return keyRing.keySet()
+		List<Integer> userIds = new ArrayList<>(keyRing.keySet());
+		
+		records.keySet()
 				.stream()
-				.collect(Collectors.toList());
+				.filter(userId -> !keyRing.containsKey(userId))
+				.forEach(userIds::add);
+		
+		return userIds;
 	}
 	
 	public PaillierPrivateKeyRing slice(List<Integer> userIds)
@@ -175,7 +493,13 @@ public class PaillierPrivateKeyRing
 		skRingNew.keyRing = keyRing.entrySet()
 				.stream()
 				.filter(entry -> userIds.contains(entry.getKey()))
-				.collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+				.collect(Collectors.toConcurrentMap(Map.Entry::getKey, Map.Entry::getValue));
+		skRingNew.records = records.entrySet()
+				.stream()
+				.filter(entry -> userIds.contains(entry.getKey()))
+				.collect(Collectors.toConcurrentMap(Map.Entry::getKey, Map.Entry::getValue));
+		skRingNew.recordFile = recordFile;
+		skRingNew.session = session;
 		skRingNew.hashKey = hashKey;
 		skRingNew.filesExist = filesExist;
 		
@@ -184,7 +508,63 @@ public class PaillierPrivateKeyRing
 	
 	public int size()
 	{
-		return keyRing.size();
+		return keys().size();
+	}
+	
+	/**
+	 * @return a keyring with the same keys, indexed file and session, whose keys can be changed on their own
+	 */
+	PaillierPrivateKeyRing copy()
+	{
+		PaillierPrivateKeyRing skRingNew = slice(Collections.emptyList());
+		
+		skRingNew.keyRing = new ConcurrentHashMap<>(keyRing);
+		skRingNew.records = new ConcurrentHashMap<>(records);
+		
+		return skRingNew;
+	}
+	
+	private synchronized PaillierPrivateKey openRecord(int userId)
+	{
+		PaillierPrivateKey sk     = keyRing.get(userId);
+		Record             record = records.get(userId);
+		
+		if (sk != null || record == null)
+		{
+			return sk;
+		}
+		try
+		{
+			String     keyStr  = new String(session().decrypt(readRecord(record)), StandardCharsets.UTF_8);
+			JsonObject keyJson = (JsonObject) new JsonParser().parse(keyStr);
+			
+			sk = SerialisationUtil.unserialise_private(keyJson);
+			keyRing.put(userId, sk);
+			records.remove(userId);
+			
+			return sk;
+		}
+		catch (IOException e)
+		{
+			throw new PaillierRuntimeException("Could not read the key of user " + userId + " from " + recordFile, e);
+		}
+	}
+	
+	private byte[] readRecord(Record record) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(record.length);
+		
+		try (FileChannel channel = FileChannel.open(recordFile, StandardOpenOption.READ))
+		{
+			while (buffer.hasRemaining())
+			{
+				if (channel.read(buffer, record.offset + buffer.position()) < 0)
+				{
+					throw new EOFException("Truncated keyring file: " + recordFile);
+				}
+			}
+		}
+		return buffer.array();
 	}
 	
 	private static byte[] loadAESKey(byte[] hashKey)
@@ -213,16 +593,22 @@ public class PaillierPrivateKeyRing
 	{
 		JsonObject keyRingJson = new JsonObject();
 		
-		for (Map.Entry<Integer, PaillierPrivateKey> id_key : keyRing.entrySet())
+		for (Integer userId : keys())
 		{
-			PrivateKeyJsonSerializer serializer = new PrivateKeyJsonSerializer();
-			
-			id_key.getValue().serialize(serializer);
-			keyRingJson.add(id_key.getKey().toString(), serializer.getNode());
+			keyRingJson.add(userId.toString(), serializeKey(get(userId)));
 		}
 		return keyRingJson;
 	}
 	
+	private static JsonObject serializeKey(PaillierPrivateKey sk)
+	{
+		PrivateKeyJsonSerializer serializer = new PrivateKeyJsonSerializer();
+		
+		sk.serialize(serializer);
+		
+		return serializer.getNode();
+	}
+	
 	private String hashFromPassword(String password)
 	{
 		try
@@ -330,20 +716,30 @@ public class PaillierPrivateKeyRing
 		if (o == null) { return false; }
 		if (o.getClass() != PaillierPrivateKeyRing.class) { return false; }
 		
-		PaillierPrivateKeyRing that       = (PaillierPrivateKeyRing) o;
-		Triple                 thisTriple = KeyRingUtil.hashToTriple(hashKey);
-		Triple                 thatTriple = KeyRingUtil.hashToTriple(that.hashKey);
+		PaillierPrivateKeyRing that = (PaillierPrivateKeyRing) o;
 		
-		if (!thisTriple.getLeft().equals(thatTriple.getLeft())) { return false; }
-		if (thisTriple.getRight() == thatTriple.getRight()) { return false; }
+		if (iterations() != that.iterations()) { return false; }
 		
-		for (Map.Entry id_key : keyRing.entrySet())
+		for (Integer userId : keys())
 		{
-			if (!id_key.getValue().equals(that.get((Integer) id_key.getKey()))) { return false; }
+			if (!get(userId).equals(that.get(userId))) { return false; }
 		}
 		return true;
 	}
 	
+	/**
+	 * @return the PBKDF2 iterations of the password hash of the keyring, 0 if it has neither a password nor a
+	 * session
+	 */
+	private int iterations()
+	{
+		if (hashKey != null)
+		{
+			return (int) KeyRingUtil.hashToTriple(hashKey).getLeft();
+		}
+		return session != null ? session.getIterations() : 0;
+	}
+	
 	public String toString()
 	{
 		return serializeKeyRing().toString();
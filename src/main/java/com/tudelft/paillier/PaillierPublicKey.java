@@ -28,6 +28,9 @@ import static com.tudelft.paillier.util.BigIntegerUtil.randomPositiveNumber;
  *     <li>A BigInteger <code>generator</code> (g) that is the second parameter of the public key.</li>
  *     <li>A BigInteger <code>modulusSquared</code> (n<sup>2</sup>) that is the square of the modulus,
  *         often used in Paillier computation.</li>
+ *     <li>Optionally, a fixed obfuscation base <code>h = x<sup>n</sup> mod n<sup>2</sup></code> and
+ *         the length of the short exponents it is raised to, used by
+ *         {@link ObfuscationMode#FIXED_BASE}.</li>
  * </ul>
  *
  * Besides storing Paillier public key, the class has methods to generate the corresponding encoding
@@ -35,6 +38,11 @@ import static com.tudelft.paillier.util.BigIntegerUtil.randomPositiveNumber;
  */
 public final class PaillierPublicKey {
 
+  /**
+   * The default length of the random exponents used with a fixed obfuscation base.
+   */
+  public static final int DEFAULT_OBFUSCATION_EXPONENT_LENGTH = 256;
+
   /**
    * The modulus (n) of the public key.
    */
@@ -50,12 +58,30 @@ public final class PaillierPublicKey {
    */
   protected final BigInteger generator;
 
+  /**
+   * The optional pool of precomputed obfuscation factors, {@code null} if disabled.
+   */
+  private volatile ObfuscationPool obfuscationPool;
+
+  /**
+   * The fixed-base obfuscator, {@code null} if this key has no fixed obfuscation base.
+   */
+  private final FixedBaseObfuscator fixedBaseObfuscator;
+
   /**
    * A serializer interface for {@code PaillierPublicKey}.
    */
   public static interface Serializer {
 
     void serialize(BigInteger modulus);
+
+    /**
+     * Serializes a public key with a fixed obfuscation base. Serializers which do not support
+     * fixed-base obfuscation only serialize the modulus.
+     */
+    default void serialize(BigInteger modulus, BigInteger obfuscationBase, int obfuscationExponentLength) {
+      serialize(modulus);
+    }
   }
 
   /**
@@ -72,6 +98,26 @@ public final class PaillierPublicKey {
     //the generator is always set to modulus+1, as this allows a
     //significantly more efficient encryption function.
     this.generator = modulus.add(BigInteger.ONE);
+    this.fixedBaseObfuscator = null;
+  }
+
+  /**
+   * Constructs a Paillier public key with a fixed obfuscation base.
+   *
+   * @param modulus of the public key
+   * @param obfuscationBase the fixed base <code>h = x<sup>n</sup> mod n<sup>2</sup></code>.
+   * @param obfuscationExponentLength the bit length of the random exponents <code>h</code> is raised to.
+   * @throws IllegalArgumentException if {@code obfuscationBase} or {@code obfuscationExponentLength} is invalid.
+   */
+  public PaillierPublicKey(BigInteger modulus, BigInteger obfuscationBase, int obfuscationExponentLength) {
+    if (modulus == null) {
+      throw new NullPointerException("modulus must not be null");
+    }
+    this.modulus = modulus;
+    this.modulusSquared = modulus.multiply(modulus);
+    this.generator = modulus.add(BigInteger.ONE);
+    this.fixedBaseObfuscator = new FixedBaseObfuscator(obfuscationBase, obfuscationExponentLength,
+                                                       modulusSquared);
   }
 
   /**
@@ -95,13 +141,50 @@ public final class PaillierPublicKey {
     return generator;
   }
 
+  /**
+   * @return true if this key has a fixed obfuscation base.
+   */
+  public boolean hasFixedBaseObfuscation() {
+    return fixedBaseObfuscator != null;
+  }
+
+  /**
+   * @return the fixed obfuscation base, or {@code null} if this key has none.
+   */
+  public BigInteger getObfuscationBase() {
+    return fixedBaseObfuscator == null ? null : fixedBaseObfuscator.getBase();
+  }
+
+  /**
+   * @return the bit length of the fixed-base obfuscation exponents, or 0 if this key has no
+   * fixed obfuscation base.
+   */
+  public int getObfuscationExponentLength() {
+    return fixedBaseObfuscator == null ? 0 : fixedBaseObfuscator.getExponentLength();
+  }
+
+  /**
+   * Creates a copy of this public key with a freshly drawn fixed obfuscation base
+   * <code>h = x<sup>n</sup> mod n<sup>2</sup></code>. The copy is equal to this key.
+   *
+   * @param obfuscationExponentLength the bit length of the random exponents <code>h</code> is raised to.
+   * @return the public key with a fixed obfuscation base.
+   */
+  public PaillierPublicKey withFixedBaseObfuscation(int obfuscationExponentLength) {
+    return new PaillierPublicKey(modulus, raw_obfuscation_factor(), obfuscationExponentLength);
+  }
+
   /**
    * Serializes the {@code PaillierPublicKey}.
    *
    * @param serializer to serialize the {@code PaillierPublicKey}.
    */
   public void serialize(Serializer serializer) {
-    serializer.serialize(modulus);
+    if (fixedBaseObfuscator == null) {
+      serializer.serialize(modulus);
+    } else {
+      serializer.serialize(modulus, fixedBaseObfuscator.getBase(), fixedBaseObfuscator.getExponentLength());
+    }
   }
 
   /**
@@ -146,6 +229,19 @@ public final class PaillierPublicKey {
     return new PaillierContext(this, true, precision);
   }
 
+  /**
+   * Creates a new Paillier context that packs many small signed integers into a single plaintext,
+   * see {@link PackedEncodingScheme}.
+   *
+   * @param slotBits the number of bits available for an encoded value, including the sign.
+   * @param headroomBits the number of additional bits per slot absorbing the growth of the values.
+   * @return the Paillier context.
+   * @throws IllegalArgumentException if {@code slotBits} or {@code headroomBits} is invalid.
+   */
+  public PaillierContext createPackedContext(int slotBits, int headroomBits) {
+    return new PaillierContext(this, context -> new PackedEncodingScheme(context, slotBits, headroomBits));
+  }
+
   /**
    * Creates a new unsigned, full precision {@code MockPaillierContext}.
    *
@@ -224,7 +320,77 @@ public final class PaillierPublicKey {
    * @return obfuscated ciphertext.
    */
   public BigInteger raw_obfuscate(BigInteger ciphertext) {
-    return BigIntegerUtil.modPow(randomPositiveNumber(modulus), modulus, modulusSquared).multiply(ciphertext).mod(modulusSquared);
+    final ObfuscationPool pool = obfuscationPool;
+    BigInteger factor = pool == null ? null : pool.take();
+    if (factor == null) {
+      factor = raw_obfuscation_factor();
+    }
+    return factor.multiply(ciphertext).mod(modulusSquared);
+  }
+
+  /**
+   * Computes a fresh obfuscation factor <code>r<sup>n</sup> mod n<sup>2</sup></code> for a random
+   * <code>r</code>. Multiplying a ciphertext with this factor obfuscates it.
+   *
+   * @return a fresh obfuscation factor.
+   */
+  public BigInteger raw_obfuscation_factor() {
+    return BigIntegerUtil.modPow(randomPositiveNumber(modulus), modulus, modulusSquared);
+  }
+
+  /**
+   * Implements the fixed-base obfuscation function. It multiplies the ciphertext with
+   * <code>h<sup>s</sup> mod n<sup>2</sup></code> for a short random exponent <code>s</code>,
+   * using a precomputed table of powers of <code>h</code>.
+   *
+   * @param ciphertext to be obfuscated.
+   * @return obfuscated ciphertext.
+   * @throws IllegalStateException if this key has no fixed obfuscation base.
+   */
+  public BigInteger raw_obfuscate_fixed_base(BigInteger ciphertext) {
+    if (fixedBaseObfuscator == null) {
+      throw new IllegalStateException("public key has no fixed obfuscation base");
+    }
+    return fixedBaseObfuscator.factor().multiply(ciphertext).mod(modulusSquared);
+  }
+
+  /**
+   * Enables a pool of precomputed obfuscation factors for this public key. Background worker
+   * threads keep the pool filled, so that {@link #raw_obfuscate(BigInteger)} only has to do a
+   * single modular multiplication while the pool is warm. A previously enabled pool is shut down.
+   *
+   * @param lowWatermark the pool size at or below which a refill is triggered.
+   * @param highWatermark the capacity of the pool.
+   * @param threads the number of background worker threads.
+   * @return the new pool.
+   */
+  public ObfuscationPool enableObfuscationPool(int lowWatermark, int highWatermark, int threads) {
+    ObfuscationPool pool = new ObfuscationPool(this::raw_obfuscation_factor, lowWatermark,
+                                               highWatermark, threads);
+    setObfuscationPool(pool);
+    return pool;
+  }
+
+  /**
+   * Disables and shuts down the pool of precomputed obfuscation factors, if any.
+   */
+  public void disableObfuscationPool() {
+    setObfuscationPool(null);
+  }
+
+  /**
+   * @return the pool of precomputed obfuscation factors, or {@code null} if disabled.
+   */
+  public ObfuscationPool getObfuscationPool() {
+    return obfuscationPool;
+  }
+
+  private synchronized void setObfuscationPool(ObfuscationPool pool) {
+    ObfuscationPool previous = obfuscationPool;
+    obfuscationPool = pool;
+    if (previous != null) {
+      previous.shutdown();
+    }
   }
   
   /**
@@ -243,11 +409,26 @@ public final class PaillierPublicKey {
    * Implements the multiplication function of the Paillier encryption scheme.
    * In the Paillier scheme you can only multiply an unencrypted value with an encrypted value.
    *
+   * Non-negative factors of at most two bits are handled without a modular exponentiation.
+   *
    * @param ciphertext of factor a.
    * @param plainfactor b.
    * @return product a*b.
    */
   public BigInteger raw_multiply(BigInteger ciphertext, BigInteger plainfactor){
+    if (plainfactor.signum() >= 0 && plainfactor.bitLength() <= 2) {
+      if (plainfactor.signum() == 0) {
+        return BigInteger.ONE;
+      }
+      BigInteger result = ciphertext;
+      if (plainfactor.bitLength() == 2) {
+        result = result.multiply(result).mod(modulusSquared);
+        if (plainfactor.testBit(0)) {
+          result = result.multiply(ciphertext).mod(modulusSquared);
+        }
+      }
+      return result;
+    }
     return BigIntegerUtil.modPow(ciphertext, plainfactor, modulusSquared);
   }
 
@@ -20,6 +20,7 @@ public class PaillierPublicKeyRing
 {
 	public static final Path keyDir      = Paths.get("./keys");
 	public static final Path keyRingFile = Paths.get(keyDir + "/pk_ring.pai");
+	public static final Path indexFile   = Paths.get(keyDir + "/pk_ring_index.pai");
 	
 	private transient Map<Integer, PaillierPublicKey> keyRing;
 	
@@ -89,6 +90,22 @@ public class PaillierPublicKeyRing
 		fos.close();
 	}
 	
+	/**
+	 * Writes the keyring as an indexed file, which can be opened without reading all keys with
+	 * {@link MappedPublicKeyRing#open(Path, int)}.
+	 */
+	public void writeToIndexedFile() throws IOException
+	{
+		if (!keyDir.toFile().exists())
+		{
+			if (!keyDir.toFile().mkdir())
+			{
+				throw new IOException("Could not create directory: " + keyDir + ".");
+			}
+		}
+		MappedPublicKeyRing.write(keyRing, indexFile);
+	}
+	
 	public void put(int userId, PaillierPublicKey pk)
 	{
 		keyRing.put(userId, pk);
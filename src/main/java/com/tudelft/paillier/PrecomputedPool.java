@@ -0,0 +1,198 @@
+package com.tudelft.paillier;
+
+import java.math.BigInteger;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of values that are expensive to compute and do not depend on the data they are
+ * used with, such as obfuscation factors, see {@link ObfuscationPool}, or whole ciphertexts of
+ * fixed plaintexts.
+ *
+ * The pool is filled by background worker threads. Whenever the number of pooled values drops
+ * to the {@code lowWatermark} a refill is triggered, and the workers keep computing values until
+ * the pool holds {@code highWatermark} of them. Taking a value never blocks: if the pool is
+ * empty, {@link #take()} returns {@code null} and the caller is expected to compute the value
+ * inline.
+ *
+ * The pool keeps track of:
+ * <ul>
+ *   <li>the number of hits, i.e. values served from the pool,</li>
+ *   <li>the number of misses, i.e. requests made while the pool was empty,</li>
+ *   <li>the number of refills triggered by reaching the low watermark.</li>
+ * </ul>
+ */
+public class PrecomputedPool {
+
+  private final Supplier<BigInteger> factory;
+
+  private final BlockingQueue<BigInteger> pool;
+
+  private final int lowWatermark;
+
+  private final int highWatermark;
+
+  private final Thread[] workers;
+
+  private final Object lock = new Object();
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong refills = new AtomicLong();
+
+  private boolean refilling;
+
+  private volatile boolean running;
+
+  /**
+   * Constructs and starts a new pool.
+   *
+   * @param factory computes a fresh value.
+   * @param lowWatermark the pool size at or below which a refill is triggered.
+   * @param highWatermark the capacity of the pool.
+   * @param threads the number of background worker threads.
+   * @param name the name of the worker threads, followed by their index.
+   * @throws IllegalArgumentException if the watermarks or the number of threads are invalid.
+   */
+  public PrecomputedPool(Supplier<BigInteger> factory, int lowWatermark, int highWatermark, int threads,
+                         String name) {
+    if (factory == null) {
+      throw new NullPointerException("factory must not be null");
+    }
+    if (lowWatermark < 0 || highWatermark <= lowWatermark) {
+      throw new IllegalArgumentException("watermarks must satisfy 0 <= lowWatermark < highWatermark");
+    }
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be positive");
+    }
+    this.factory = factory;
+    this.lowWatermark = lowWatermark;
+    this.highWatermark = highWatermark;
+    this.pool = new ArrayBlockingQueue<>(highWatermark);
+    this.workers = new Thread[threads];
+    this.refilling = true;
+    this.running = true;
+    for (int i = 0; i < threads; i++) {
+      workers[i] = new Thread(this::work, name + "-" + i);
+      workers[i].setDaemon(true);
+      workers[i].start();
+    }
+  }
+
+  /**
+   * Takes a precomputed value from the pool.
+   *
+   * @return a value, or {@code null} if the pool is empty.
+   */
+  public BigInteger take() {
+    BigInteger factor = pool.poll();
+    if (factor == null) {
+      misses.incrementAndGet();
+    } else {
+      hits.incrementAndGet();
+    }
+    if (pool.size() <= lowWatermark) {
+      requestRefill();
+    }
+    return factor;
+  }
+
+  /**
+   * Stops the background workers. Values already in the pool are discarded.
+   */
+  public void shutdown() {
+    running = false;
+    synchronized (lock) {
+      lock.notifyAll();
+    }
+    for (Thread worker : workers) {
+      worker.interrupt();
+    }
+    pool.clear();
+  }
+
+  /**
+   * @return true if the background workers have not been shut down.
+   */
+  public boolean isRunning() {
+    return running;
+  }
+
+  /**
+   * @return the number of values currently in the pool.
+   */
+  public int size() {
+    return pool.size();
+  }
+
+  /**
+   * @return the pool size at or below which a refill is triggered.
+   */
+  public int getLowWatermark() {
+    return lowWatermark;
+  }
+
+  /**
+   * @return the capacity of the pool.
+   */
+  public int getHighWatermark() {
+    return highWatermark;
+  }
+
+  /**
+   * @return the number of values served from the pool.
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return the number of requests made while the pool was empty.
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * @return the number of refills triggered by reaching the low watermark.
+   */
+  public long getRefills() {
+    return refills.get();
+  }
+
+  private void requestRefill() {
+    synchronized (lock) {
+      if (!refilling) {
+        refilling = true;
+        refills.incrementAndGet();
+        lock.notifyAll();
+      }
+    }
+  }
+
+  private void work() {
+    try {
+      while (running) {
+        synchronized (lock) {
+          while (running && !refilling) {
+            lock.wait();
+          }
+        }
+        if (!running) {
+          return;
+        }
+        if (!pool.offer(factory.get()) || pool.remainingCapacity() == 0) {
+          synchronized (lock) {
+            refilling = false;
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
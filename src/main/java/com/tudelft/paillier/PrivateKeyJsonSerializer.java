@@ -9,6 +9,12 @@ import java.math.BigInteger;
 
 public class PrivateKeyJsonSerializer implements PaillierPrivateKey.Serializer
 {
+	/**
+	 * The version of keys with the prime factors and the decryption constants, keys without a version only
+	 * have lambda.
+	 */
+	public static final int VERSION_CRT = 2;
+	
 	private JsonObject data;
 	
 	public JsonObject getNode()
@@ -39,4 +45,24 @@ public class PrivateKeyJsonSerializer implements PaillierPrivateKey.Serializer
 		String     encodedLambda = new String(Base64.encodeBase64(lambda.toByteArray()));
 		data.add("lambda", SerialisationUtil.gson.toJsonTree(encodedLambda));
 	}
+	
+	@Override
+	public void serialize(PaillierPublicKey publickey, BigInteger p, BigInteger q, BigInteger pInverse,
+	                      BigInteger hp, BigInteger hq, BigInteger pSquaredInverse)
+	{
+		// lambda is kept, so that readers of the lambda-only form can still read the key
+		serialize(publickey, p, q);
+		data.add("version", SerialisationUtil.gson.toJsonTree(VERSION_CRT));
+		add("p", p);
+		add("q", q);
+		add("p_inv", pInverse);
+		add("hp", hp);
+		add("hq", hq);
+		add("p_sq_inv", pSquaredInverse);
+	}
+	
+	private void add(String name, BigInteger value)
+	{
+		data.add(name, SerialisationUtil.gson.toJsonTree(new String(Base64.encodeBase64(value.toByteArray()))));
+	}
 }
\ No newline at end of file
@@ -0,0 +1,105 @@
+package com.tudelft.paillier;
+
+/**
+ * A PaillierContext bound to the private key of its public key.
+ *
+ * It behaves exactly like a {@code PaillierContext}, except that obfuscation is done by
+ * {@link PaillierPrivateKey#raw_obfuscate(java.math.BigInteger)}, which computes the obfuscation
+ * factor modulo <code>p<sup>2</sup></code> and <code>q<sup>2</sup></code> separately instead of
+ * modulo <code>n<sup>2</sup></code>. In {@link ObfuscationMode#FIXED_BASE} it obfuscates with the
+ * fixed base of the public key, like a {@code PaillierContext}, since the short exponent is already
+ * cheaper than the CRT obfuscation. Encrypted numbers produced by this context can be combined with
+ * those of a regular {@code PaillierContext} with the same public key and encoding.
+ *
+ * Create one through the create methods on a PaillierPrivateKey, e.g.,
+ * {@link PaillierPrivateKey#createSignedContext()}.
+ */
+public class PrivatePaillierContext extends PaillierContext {
+
+  /**
+   * The private key used to obfuscate.
+   */
+  private final PaillierPrivateKey privateKey;
+
+  /**
+   * Constructs a new private-key bound Paillier context.
+   *
+   * @param privateKey used for obfuscation, its public key is the context's public key.
+   * @param signed to denote whether this context supports signed or unsigned numbers.
+   * @param precision to denote the number of bits used to represent valid numbers.
+   */
+  public PrivatePaillierContext(PaillierPrivateKey privateKey, boolean signed, int precision) {
+    this(privateKey, signed, precision, DEFAULT_BASE);
+  }
+
+  /**
+   * Constructs a new private-key bound Paillier context.
+   *
+   * @param privateKey used for obfuscation, its public key is the context's public key.
+   * @param signed to denote whether this context supports signed or unsigned numbers.
+   * @param precision to denote the number of bits used to represent valid numbers.
+   * @param base to denote the selected base used for encoding.
+   */
+  public PrivatePaillierContext(PaillierPrivateKey privateKey, boolean signed, int precision, int base) {
+    this(privateKey, signed, precision, base, ObfuscationMode.FULL_EXPONENT);
+  }
+
+  /**
+   * Constructs a new private-key bound Paillier context with a specific obfuscation mode.
+   *
+   * @param privateKey used for obfuscation, its public key is the context's public key.
+   * @param signed to denote whether this context supports signed or unsigned numbers.
+   * @param precision to denote the number of bits used to represent valid numbers.
+   * @param base to denote the selected base used for encoding.
+   * @param obfuscationMode to denote how ciphertexts are obfuscated.
+   * @throws IllegalArgumentException if {@code obfuscationMode} is not supported by the public key.
+   */
+  public PrivatePaillierContext(PaillierPrivateKey privateKey, boolean signed, int precision, int base,
+                                ObfuscationMode obfuscationMode) {
+    super(privateKey.getPublicKey(), signed, precision, base, obfuscationMode);
+    this.privateKey = privateKey;
+  }
+
+  /**
+   * @return the private key this context is bound to.
+   */
+  public PaillierPrivateKey getPrivateKey() {
+    return privateKey;
+  }
+
+  /**
+   * Obfuscates an {@code EncryptedNumber} using the private key, or using the fixed base of the public
+   * key in {@link ObfuscationMode#FIXED_BASE}.
+   *
+   * @param encrypted the {@code EncryptedNumber} to be obfuscated.
+   * @return the obfuscated {@code EncryptedNumber}.
+   */
+  @Override
+  public EncryptedNumber obfuscate(EncryptedNumber encrypted) {
+    if (getObfuscationMode() == ObfuscationMode.FIXED_BASE) {
+      return super.obfuscate(encrypted);
+    }
+    checkSameContext(encrypted);
+    return new EncryptedNumber(this, privateKey.raw_obfuscate(encrypted.ciphertext),
+                               encrypted.getExponent(), true);
+  }
+
+  @Override
+  public int hashCode() {
+    return super.hashCode();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (o == null || o.getClass() != PrivatePaillierContext.class) {
+      return false;
+    }
+    PrivatePaillierContext context = (PrivatePaillierContext) o;
+    return privateKey.equals(context.privateKey) &&
+            getEncodingScheme().equals(context.getEncodingScheme()) &&
+            getObfuscationMode() == context.getObfuscationMode();
+  }
+}
@@ -38,4 +38,15 @@ public class PublicKeyJsonSerializer implements PaillierPublicKey.Serializer
 		an.add("encrypt");
 		data.add("key_ops", an);
 	}
+	
+	@Override
+	public void serialize(BigInteger modulus, BigInteger obfuscationBase, int obfuscationExponentLength)
+	{
+		serialize(modulus);
+		
+		// Convert h to base64 encode
+		String encodedBase = new String(Base64.encodeBase64(obfuscationBase.toByteArray()));
+		data.add("h", SerialisationUtil.gson.toJsonTree(encodedBase));
+		data.add("h_exp_len", SerialisationUtil.gson.toJsonTree(obfuscationExponentLength));
+	}
 }
\ No newline at end of file
@@ -386,8 +386,13 @@ public class StandardEncodingScheme implements EncodingScheme{
    * @throws DecodeException if the {@code encoded} cannot be decoded.
    */
   public BigInteger decodeBigInteger(EncodedNumber encoded) throws DecodeException {
-    BigInteger significand = getSignificand(encoded);
-    return significand.multiply(BigInteger.valueOf(base).pow(encoded.getExponent()));
+    context.checkSameContext(encoded);
+    return decodeBigInteger(encoded.getValue(), encoded.getExponent());
+  }
+
+  private BigInteger decodeBigInteger(BigInteger value, int exponent) throws DecodeException {
+    BigInteger significand = getSignificand(value);
+    return significand.multiply(BigInteger.valueOf(base).pow(exponent));
   }
 
   /**
@@ -400,10 +405,15 @@ public class StandardEncodingScheme implements EncodingScheme{
    * @throws DecodeException if the {@code encoded} cannot be decoded.
    */
   public double decodeDouble(EncodedNumber encoded) throws DecodeException {
-    BigInteger significand = getSignificand(encoded);
-    BigDecimal exp = BigDecimal.valueOf(base).pow(Math.abs(encoded.getExponent()));
+    context.checkSameContext(encoded);
+    return decodeDouble(encoded.getValue(), encoded.getExponent());
+  }
+
+  public double decodeDouble(BigInteger value, int exponent) throws DecodeException {
+    BigInteger significand = getSignificand(value);
+    BigDecimal exp = BigDecimal.valueOf(base).pow(Math.abs(exponent));
     BigDecimal bigDecoded;
-    if (encoded.getExponent() < 0) {
+    if (exponent < 0) {
       bigDecoded = new BigDecimal(significand).divide(exp, MathContext.DECIMAL128);
     } else {
       bigDecoded = new BigDecimal(significand).multiply(exp, MathContext.DECIMAL128);
@@ -425,7 +435,12 @@ public class StandardEncodingScheme implements EncodingScheme{
    * @throws DecodeException if the {@code encoded} cannot be decoded.
    */
   public long decodeLong(EncodedNumber encoded) throws DecodeException {
-    BigInteger decoded = decodeBigInteger(encoded);
+    context.checkSameContext(encoded);
+    return decodeLong(encoded.getValue(), encoded.getExponent());
+  }
+
+  public long decodeLong(BigInteger value, int exponent) throws DecodeException {
+    BigInteger decoded = decodeBigInteger(value, exponent);
     if(BigIntegerUtil.less(decoded, BigIntegerUtil.LONG_MIN_VALUE) ||
             BigIntegerUtil.greater(decoded, BigIntegerUtil.LONG_MAX_VALUE)) {
       throw new DecodeException("Decoded value cannot be represented as long.");
@@ -459,7 +474,16 @@ public class StandardEncodingScheme implements EncodingScheme{
    */
   private BigInteger getSignificand(EncodedNumber encoded) {
     context.checkSameContext(encoded);
-    final BigInteger value = encoded.getValue();
+    return getSignificand(encoded.getValue());
+  }
+
+  /**
+   * Returns the significand of a raw encoded {@code value}, see {@link #getSignificand(EncodedNumber)}.
+   *
+   * @param value the encoded value.
+   * @return the significand of the value.
+   */
+  private BigInteger getSignificand(BigInteger value) {
 
     if(value.compareTo(context.getPublicKey().getModulus()) > 0)
       throw new DecodeException("The significand of the encoded number is corrupted");
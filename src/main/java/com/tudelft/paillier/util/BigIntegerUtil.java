@@ -17,6 +17,7 @@ import com.squareup.jnagmp.Gmp;
 
 import java.math.BigInteger;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,6 +31,7 @@ import java.util.logging.Logger;
  *     <li>The method to determine the bit length of an absolute value of a {@code BigInteger}</li>
  *     <li>The method to convert a {@code BigInteger} to an exact {@code long} representation</li>
  *     <li>The method to compute square root</li>
+ *     <li>The method to compute a product of modular exponentiations</li>
  * </ul>
  */
 public class BigIntegerUtil
@@ -87,6 +89,136 @@ public class BigIntegerUtil
     }
   }
 
+  /**
+   * Computes the product of modular exponentiations
+   * <code>base<sub>0</sub><sup>exponent<sub>0</sub></sup> * ... * base<sub>k-1</sub><sup>exponent<sub>k-1</sub></sup> mod modulus</code>
+   * with a simultaneous multi-exponentiation. All exponentiations share one chain of squarings.
+   * For few bases, Straus' interleaved window method is used, for many bases Pippenger's bucket method.
+   * Both are considerably cheaper than computing the exponentiations independently.
+   *
+   * @param bases of the modular exponentiations
+   * @param exponents of the modular exponentiations, must be non-negative
+   * @param modulus
+   * @return the product of (bases[i] ^ exponents[i]) mod modulus
+   */
+  public static BigInteger multiModPow(BigInteger[] bases, BigInteger[] exponents, BigInteger modulus) {
+    if (bases.length != exponents.length) {
+      throw new IllegalArgumentException("bases and exponents must have the same length");
+    }
+    int k = bases.length;
+    int bits = 0;
+    for (BigInteger exponent : exponents) {
+      if (exponent.signum() < 0) {
+        throw new IllegalArgumentException("exponents must be non-negative");
+      }
+      bits = Math.max(bits, exponent.bitLength());
+    }
+    if (k == 0 || bits == 0) {
+      return BigInteger.ONE.mod(modulus);
+    }
+    if (k == 1) {
+      return modPow(bases[0], exponents[0], modulus);
+    }
+    // cost in modular multiplications, not counting the shared squarings
+    int strausWindow = 1;
+    long strausCost = Long.MAX_VALUE;
+    for (int w = 1; w <= 6; w++) {
+      long cost = (long) k * ((1 << w) - 2) + (long) k * ((bits + w - 1) / w);
+      if (cost < strausCost) {
+        strausCost = cost;
+        strausWindow = w;
+      }
+    }
+    int pippengerWindow = 1;
+    long pippengerCost = Long.MAX_VALUE;
+    for (int c = 1; c <= 16; c++) {
+      long cost = (long) ((bits + c - 1) / c) * (k + (2L << c));
+      if (cost < pippengerCost) {
+        pippengerCost = cost;
+        pippengerWindow = c;
+      }
+    }
+    return strausCost <= pippengerCost
+           ? strausModPow(bases, exponents, modulus, bits, strausWindow)
+           : pippengerModPow(bases, exponents, modulus, bits, pippengerWindow);
+  }
+
+  private static BigInteger strausModPow(BigInteger[] bases, BigInteger[] exponents, BigInteger modulus,
+                                         int bits, int w) {
+    int k = bases.length;
+    BigInteger[][] table = new BigInteger[k][1 << w];
+    for (int i = 0; i < k; i++) {
+      table[i][1] = bases[i].mod(modulus);
+      for (int j = 2; j < table[i].length; j++) {
+        table[i][j] = table[i][j - 1].multiply(table[i][1]).mod(modulus);
+      }
+    }
+    int windows = (bits + w - 1) / w;
+    BigInteger result = BigInteger.ONE;
+    for (int window = windows - 1; window >= 0; window--) {
+      if (window != windows - 1) {
+        for (int s = 0; s < w; s++) {
+          result = result.multiply(result).mod(modulus);
+        }
+      }
+      for (int i = 0; i < k; i++) {
+        int digit = digit(exponents[i], window * w, w);
+        if (digit != 0) {
+          result = result.multiply(table[i][digit]).mod(modulus);
+        }
+      }
+    }
+    return result;
+  }
+
+  private static BigInteger pippengerModPow(BigInteger[] bases, BigInteger[] exponents, BigInteger modulus,
+                                            int bits, int c) {
+    int k = bases.length;
+    int windows = (bits + c - 1) / c;
+    BigInteger result = BigInteger.ONE;
+    BigInteger[] buckets = new BigInteger[1 << c];
+    for (int window = windows - 1; window >= 0; window--) {
+      if (window != windows - 1) {
+        for (int s = 0; s < c; s++) {
+          result = result.multiply(result).mod(modulus);
+        }
+      }
+      Arrays.fill(buckets, null);
+      for (int i = 0; i < k; i++) {
+        int digit = digit(exponents[i], window * c, c);
+        if (digit != 0) {
+          buckets[digit] = buckets[digit] == null ? bases[i] : buckets[digit].multiply(bases[i]).mod(modulus);
+        }
+      }
+      // sum_j j * bucket[j], computed as a running product of suffix products
+      BigInteger running = null;
+      BigInteger windowResult = null;
+      for (int j = buckets.length - 1; j > 0; j--) {
+        if (buckets[j] != null) {
+          running = running == null ? buckets[j] : running.multiply(buckets[j]).mod(modulus);
+        }
+        if (running != null) {
+          windowResult = windowResult == null ? running : windowResult.multiply(running).mod(modulus);
+        }
+      }
+      if (windowResult != null) {
+        result = result.multiply(windowResult).mod(modulus);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the {@code width} bits of {@code n} starting at bit {@code offset}, as an int.
+   */
+  private static int digit(BigInteger n, int offset, int width) {
+    int digit = 0;
+    for (int b = width - 1; b >= 0; b--) {
+      digit = (digit << 1) | (n.testBit(offset + b) ? 1 : 0);
+    }
+    return digit;
+  }
+
   /**
    * Computes the multiplicitive inverse of `a` in the integers, modular `b`.
    *
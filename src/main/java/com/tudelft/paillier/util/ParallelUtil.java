@@ -0,0 +1,33 @@
+package com.tudelft.paillier.util;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Class for common helpers to spread independent work over a fork-join pool.
+ */
+public class ParallelUtil
+{
+	/**
+	 * Runs {@code body} for every index in [0, {@code n}) on {@code pool} and waits for all of them
+	 * to complete. Exceptions thrown by {@code body} are rethrown to the caller.
+	 *
+	 * @param pool the fork-join pool to run on
+	 * @param n    the number of indices
+	 * @param body the work for a single index
+	 */
+	public static void parallelFor(ForkJoinPool pool, int n, IntConsumer body)
+	{
+		if (n == 0)
+		{
+			return;
+		}
+		if (n == 1)
+		{
+			body.accept(0);
+			return;
+		}
+		pool.submit(() -> IntStream.range(0, n).parallel().forEach(body)).join();
+	}
+}
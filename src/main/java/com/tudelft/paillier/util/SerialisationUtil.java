@@ -4,6 +4,7 @@ import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.tudelft.paillier.PaillierPrivateKey;
 import com.tudelft.paillier.PaillierPublicKey;
+import com.tudelft.paillier.PrivateKeyJsonSerializer;
 import org.apache.commons.codec.binary.Base64;
 
 import java.math.BigInteger;
@@ -21,15 +22,32 @@ public class SerialisationUtil
 		// decode the modulus
 		BigInteger n = new BigInteger(Base64.decodeBase64(data.get("n").getAsString()));
 		
+		if (data.has("h"))
+		{
+			// decode the fixed obfuscation base
+			BigInteger h = new BigInteger(Base64.decodeBase64(data.get("h").getAsString()));
+			
+			return new PaillierPublicKey(n, h, data.get("h_exp_len").getAsInt());
+		}
 		return new PaillierPublicKey(n);
 	}
 	
 	public static PaillierPrivateKey unserialise_private(JsonObject data)
 	{
 		// First step is to unserialise the Public key
-		PaillierPublicKey pub    = unserialise_public((JsonObject) data.get("pub"));
-		BigInteger        lambda = new BigInteger(Base64.decodeBase64(data.get("lambda").getAsString()));
+		PaillierPublicKey pub = unserialise_public((JsonObject) data.get("pub"));
 		
-		return new PaillierPrivateKey(pub, lambda);
+		if (data.has("version") && data.get("version").getAsInt() >= PrivateKeyJsonSerializer.VERSION_CRT)
+		{
+			// the factors and decryption constants are stored, no need to factor the modulus
+			return new PaillierPrivateKey(pub, decode(data, "p"), decode(data, "q"), decode(data, "p_inv"),
+			                              decode(data, "hp"), decode(data, "hq"), decode(data, "p_sq_inv"));
+		}
+		return new PaillierPrivateKey(pub, decode(data, "lambda"));
+	}
+	
+	private static BigInteger decode(JsonObject data, String name)
+	{
+		return new BigInteger(Base64.decodeBase64(data.get(name).getAsString()));
 	}
 }
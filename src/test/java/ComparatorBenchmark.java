@@ -0,0 +1,69 @@
+import com.tudelft.comparison.ComparisonMode;
+import com.tudelft.comparison.Comparator;
+import com.tudelft.comparison.VerifierClient;
+import com.tudelft.comparison.VerifierServer;
+import com.tudelft.paillier.EncryptedNumber;
+import com.tudelft.paillier.PaillierContext;
+import com.tudelft.paillier.PaillierPrivateKey;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures the throughput of comparisons through a {@link VerifierServer} on the loopback interface, for a
+ * range of batch sizes and pipeline depths.
+ *
+ * Usage: ComparatorBenchmark [modulus length] [comparisons per run]
+ */
+public class ComparatorBenchmark
+{
+	public static void main(String[] args) throws Exception
+	{
+		int                modulusLength = args.length > 0 ? Integer.parseInt(args[0]) : 2048;
+		int                comparisons   = args.length > 1 ? Integer.parseInt(args[1]) : 512;
+		PaillierPrivateKey sk            = PaillierPrivateKey.create(modulusLength);
+		PaillierContext    cxt           = sk.getPublicKey().createSignedContext();
+		Random             rand          = new Random();
+		List<EncryptedNumber> a          = new ArrayList<>();
+		List<EncryptedNumber> b          = new ArrayList<>();
+		
+		for (int i = 0; i < comparisons; i++)
+		{
+			a.add(cxt.encrypt(rand.nextInt()).obfuscate());
+			b.add(cxt.encrypt(rand.nextInt()).obfuscate());
+		}
+		try (VerifierServer server = VerifierServer.loopback(sk))
+		{
+			InetSocketAddress address = new InetSocketAddress(server.getAddress(), server.getPort());
+			
+			for (ComparisonMode mode : ComparisonMode.values())
+			{
+				System.out.printf("%s, %d bit modulus, %d comparisons per run%n", mode, modulusLength, comparisons);
+				System.out.printf("%10s %10s %15s%n", "batch", "depth", "comparisons/s");
+				for (int batchSize : new int[]{1, 8, 32, 128})
+				{
+					for (int depth : new int[]{1, 4, 16})
+					{
+						try (VerifierClient client = new VerifierClient(sk.getPublicKey(), address, batchSize, 0, depth))
+						{
+							Comparator comp = new Comparator(client, mode);
+							
+							// warm up
+							comp.compareAll(a.subList(0, Math.min(comparisons, 2 * batchSize)), b.subList(0, Math.min(comparisons, 2 * batchSize)), 32);
+							
+							long start = System.nanoTime();
+							
+							comp.compareAll(a, b, 32);
+							
+							double seconds = (System.nanoTime() - start) / 1e9;
+							
+							System.out.printf("%10d %10d %15.1f%n", batchSize, depth, comparisons / seconds);
+						}
+					}
+				}
+			}
+		}
+	}
+}
@@ -1,14 +1,32 @@
+import com.tudelft.paillier.EncryptedNumber;
 import com.tudelft.paillier.PaillierContext;
 import com.tudelft.paillier.PaillierPrivateKey;
+import com.tudelft.comparison.ComparisonCache;
+import com.tudelft.comparison.ComparisonMode;
 import com.tudelft.comparison.Comparator;
+import com.tudelft.comparison.EncryptedSorter;
+import com.tudelft.comparison.EncryptedTournament;
+import com.tudelft.comparison.VerifierClient;
+import com.tudelft.comparison.VerifierServer;
 
 import static org.junit.Assert.*;
 import static org.hamcrest.CoreMatchers.*;
 
 import org.junit.Test;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.math.BigInteger;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
 
 @SuppressWarnings("Duplicates")
 public class ComparatorTest
@@ -145,4 +163,444 @@ public class ComparatorTest
 					, is(BigInteger.ZERO));
 		}
 	}
+	
+	@Test
+	public void compareAllTest()
+	{
+		Comparator            comp     = new Comparator(sk);
+		List<EncryptedNumber> a        = new ArrayList<>();
+		List<EncryptedNumber> b        = new ArrayList<>();
+		int[]                 expected = new int[test_iterations];
+		
+		for (int i = 0; i < test_iterations; i++)
+		{
+			BigInteger x = new BigInteger(Comparator.MAX_BIT_LENGTH, rand);
+			BigInteger y = i % 3 == 0 ? x : new BigInteger(Comparator.MAX_BIT_LENGTH, rand);
+			
+			a.add(cxt.encrypt(x));
+			b.add(cxt.encrypt(y));
+			expected[i] = x.compareTo(y);
+		}
+		List<EncryptedNumber> res = comp.compareAll(a, b);
+		
+		assertThat(res.size(), is(test_iterations));
+		for (int i = 0; i < test_iterations; i++)
+		{
+			assertThat(sk.decrypt(res.get(i)).decodeBigInteger(), is(BigInteger.valueOf(expected[i])));
+		}
+	}
+	
+	@Test
+	public void compareBlindedDifferenceTest()
+	{
+		Comparator            comp     = new Comparator(sk, ComparisonMode.BLINDED_DIFFERENCE);
+		List<EncryptedNumber> a        = new ArrayList<>();
+		List<EncryptedNumber> b        = new ArrayList<>();
+		int[]                 expected = new int[test_iterations];
+		
+		for (int i = 0; i < test_iterations; i++)
+		{
+			BigInteger x = new BigInteger(Comparator.MAX_BIT_LENGTH - 1, rand);
+			BigInteger y = i % 3 == 0 ? x : i % 3 == 1 ? x.add(BigInteger.ONE) : new BigInteger(Comparator.MAX_BIT_LENGTH - 1, rand).negate();
+			BigInteger z = sk.decrypt(comp.compare(cxt.encrypt(x), cxt.encrypt(y))).decodeBigInteger();
+			
+			assertThat("Should be " + x + symbol[1 + x.compareTo(y)] + y, z, is(BigInteger.valueOf(x.compareTo(y))));
+			a.add(cxt.encrypt(x));
+			b.add(cxt.encrypt(y));
+			expected[i] = x.compareTo(y);
+		}
+		List<EncryptedNumber> res = comp.compareAll(a, b);
+		
+		for (int i = 0; i < test_iterations; i++)
+		{
+			assertThat(sk.decrypt(res.get(i)).decodeBigInteger(), is(BigInteger.valueOf(expected[i])));
+		}
+	}
+	
+	@Test
+	public void compareWithResultPoolsTest() throws Exception
+	{
+		Comparator comp = new Comparator(sk, ComparisonMode.BLINDED_DIFFERENCE);
+		
+		comp.enableResultPools(2, 8, 1);
+		try
+		{
+			Thread.sleep(100);
+			for (int i = 0; i < test_iterations; i++)
+			{
+				BigInteger      a = BigInteger.valueOf(rand.nextInt(3));
+				BigInteger      b = BigInteger.ONE;
+				EncryptedNumber z = comp.compare(cxt.encrypt(a), cxt.encrypt(b));
+				
+				assertThat(sk.decrypt(z).decodeBigInteger(), is(BigInteger.valueOf(a.compareTo(b))));
+				// pooled and encrypted results carry the exponent of the encoding
+				assertThat(z.getExponent(), is(cxt.encode(a.compareTo(b)).getExponent()));
+			}
+			assertEquals(test_iterations, comp.getResultPoolHits() + comp.getResultPoolMisses());
+			assertTrue(comp.getResultPoolHits() > 0);
+		}
+		finally
+		{
+			comp.disableResultPools();
+		}
+		assertEquals(0, comp.getResultPoolHits());
+	}
+	
+	@Test
+	public void compareRemoteTest() throws Exception
+	{
+		try (VerifierServer server = VerifierServer.loopback(sk);
+		     VerifierClient client = VerifierClient.loopback(sk.getPublicKey(), server))
+		{
+			for (ComparisonMode mode : ComparisonMode.values())
+			{
+				Comparator            comp     = new Comparator(client, mode);
+				List<EncryptedNumber> a        = new ArrayList<>();
+				List<EncryptedNumber> b        = new ArrayList<>();
+				int[]                 expected = new int[test_iterations];
+				
+				for (int i = 0; i < test_iterations; i++)
+				{
+					BigInteger x = BigInteger.valueOf(rand.nextInt(5));
+					BigInteger y = BigInteger.valueOf(rand.nextInt(5));
+					
+					a.add(cxt.encrypt(x));
+					b.add(cxt.encrypt(y));
+					expected[i] = x.compareTo(y);
+				}
+				List<EncryptedNumber> all    = comp.compareAll(a, b, 3);
+				BigInteger[]          single = new BigInteger[test_iterations];
+				
+				// concurrent single comparisons are coalesced into frames
+				IntStream.range(0, test_iterations).parallel().forEach(i ->
+						single[i] = sk.decrypt(comp.compare(a.get(i), b.get(i), 3)).decodeBigInteger());
+				for (int i = 0; i < test_iterations; i++)
+				{
+					assertThat(sk.decrypt(all.get(i)).decodeBigInteger(), is(BigInteger.valueOf(expected[i])));
+					assertThat(single[i], is(BigInteger.valueOf(expected[i])));
+				}
+			}
+			assertThat(server.getComparisons(), is(2L * ComparisonMode.values().length * test_iterations));
+			assertThat(server.getFrames(), is(client.getFrames()));
+		}
+	}
+	
+	@Test
+	public void remoteVersionMismatchTest() throws Exception
+	{
+		try (VerifierServer server = VerifierServer.loopback(sk);
+		     Socket socket = new Socket(server.getAddress(), server.getPort()))
+		{
+			DataInputStream  in  = new DataInputStream(socket.getInputStream());
+			DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+			
+			in.readInt();
+			assertThat(in.readByte(), is((byte) 4));
+			in.readFully(new byte[in.readInt()]);
+			// a client of version 1 knows neither swaps nor packed differences, the server drops it
+			out.writeInt(0x50434d50);
+			out.writeByte(1);
+			out.flush();
+			assertThat(in.read(), is(-1));
+		}
+	}
+	
+	@Test
+	public void compareAsyncTest()
+	{
+		Comparator      comp     = new Comparator(sk, ComparisonMode.BLINDED_DIFFERENCE);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		int             n        = 3 * test_iterations;
+		
+		comp.setAsyncBatching(16, 2000);
+		try
+		{
+			List<CompletableFuture<EncryptedNumber>> futures  = new ArrayList<>();
+			int[]                                    expected = new int[n];
+			
+			for (int i = 0; i < n; i++)
+			{
+				BigInteger x = BigInteger.valueOf(rand.nextInt(1000));
+				BigInteger y = BigInteger.valueOf(rand.nextInt(1000));
+				
+				expected[i] = x.compareTo(y);
+				futures.add(i % 2 == 0
+						? comp.compareAsync(cxt.encrypt(x), cxt.encrypt(y), 10)
+						: comp.compareAsync(cxt.encrypt(x), cxt.encrypt(y), 10, executor));
+			}
+			CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+			for (int i = 0; i < n; i++)
+			{
+				assertThat(sk.decrypt(futures.get(i).join()).decodeBigInteger(), is(BigInteger.valueOf(expected[i])));
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void sortTest()
+	{
+		EncryptedSorter       sorter    = new EncryptedSorter(new Comparator(sk));
+		List<BigInteger>      values    = new ArrayList<>();
+		List<EncryptedNumber> encrypted = new ArrayList<>();
+		
+		for (int i = 0; i < 13; i++)
+		{
+			values.add(BigInteger.valueOf(rand.nextInt(2000) - 1000));
+			encrypted.add(cxt.encrypt(values.get(i)));
+		}
+		values.add(values.get(0));
+		encrypted.add(cxt.encrypt(values.get(0)));
+		
+		List<BigInteger> ascending = new ArrayList<>(values);
+		
+		Collections.sort(ascending);
+		assertThat(decrypt(sorter.sort(encrypted, 11).getValues()), is(ascending));
+		
+		List<BigInteger> descending = new ArrayList<>(ascending);
+		
+		Collections.reverse(descending);
+		assertThat(decrypt(sorter.sort(encrypted, 11, true).getValues()), is(descending));
+		
+		EncryptedSorter.Result top = sorter.topK(encrypted, 3, 11);
+		
+		assertThat(decrypt(top.getValues()), is(descending.subList(0, 3)));
+		assertThat(top.getRounds() > 0, is(true));
+	}
+	
+	@Test
+	public void sortRemoteTest() throws Exception
+	{
+		try (VerifierServer server = VerifierServer.loopback(sk);
+		     VerifierClient client = VerifierClient.loopback(sk.getPublicKey(), server))
+		{
+			EncryptedSorter       sorter    = new EncryptedSorter(new Comparator(client, ComparisonMode.BOTH_OPERANDS));
+			List<EncryptedNumber> encrypted = new ArrayList<>();
+			
+			for (int x : new int[]{5, -3, 7, 0, 7, 2, -8, 1})
+			{
+				encrypted.add(cxt.encrypt(x));
+			}
+			EncryptedSorter.Result sorted = sorter.sort(encrypted, 4);
+			
+			assertThat(decrypt(sorted.getValues()), is(bigIntegers(-8, -3, 0, 1, 2, 5, 7, 7)));
+			// Batcher's odd-even merge sort of 8 values has 19 compare-exchanges in 6 layers
+			assertThat(sorted.getRounds(), is(6));
+			assertThat(sorted.getComparisons(), is(19L));
+			assertThat(server.getFrames(), is(6L));
+			assertThat(server.getComparisons(), is(19L));
+		}
+	}
+	
+	@Test
+	public void compareAgainstTest()
+	{
+		BigInteger      t         = BigInteger.valueOf(rand.nextInt(1000) - 500);
+		EncryptedNumber threshold = cxt.encrypt(t);
+		
+		for (ComparisonMode mode : ComparisonMode.values())
+		{
+			Comparator            comp     = new Comparator(sk, mode);
+			List<EncryptedNumber> values   = new ArrayList<>();
+			int[]                 expected = new int[2 * test_iterations];
+			
+			// enough values to blind the threshold with a fixed-base table
+			for (int i = 0; i < expected.length; i++)
+			{
+				BigInteger x = i % 4 == 0 ? t : BigInteger.valueOf(rand.nextInt(1000) - 500);
+				
+				values.add(cxt.encrypt(x));
+				expected[i] = x.compareTo(t);
+			}
+			List<EncryptedNumber> results = comp.compareAgainst(values, threshold, 10);
+			// too few values to build a fixed-base table for the threshold
+			List<EncryptedNumber> small   = comp.compareAgainst(values.subList(0, 3), threshold, 10);
+			
+			for (int i = 0; i < expected.length; i++)
+			{
+				assertThat(sk.decrypt(results.get(i)).decodeBigInteger(), is(BigInteger.valueOf(expected[i])));
+			}
+			for (int i = 0; i < small.size(); i++)
+			{
+				assertThat(sk.decrypt(small.get(i)).decodeBigInteger(), is(BigInteger.valueOf(expected[i])));
+			}
+		}
+	}
+	
+	@Test
+	public void tournamentTest()
+	{
+		EncryptedTournament   tournament = new EncryptedTournament(new Comparator(sk));
+		long[]                values     = {12, -40, 97, 3, 97, -40, 0, 55, -7, 18, 97};
+		List<EncryptedNumber> encrypted  = new ArrayList<>();
+		
+		for (long x : values)
+		{
+			encrypted.add(cxt.encrypt(x));
+		}
+		EncryptedTournament.Result max = tournament.max(encrypted, 8);
+		EncryptedTournament.Result min = tournament.min(encrypted, 8);
+		
+		assertThat(sk.decrypt(max.getValue()).decodeLong(), is(97L));
+		assertThat(sk.decrypt(max.getIndex()).decodeLong(), is(2L));
+		assertThat(sk.decrypt(min.getValue()).decodeLong(), is(-40L));
+		assertThat(sk.decrypt(min.getIndex()).decodeLong(), is(1L));
+		assertThat(max.getRounds(), is(4));
+		assertThat(max.getComparisons(), is(10L));
+	}
+	
+	@Test
+	public void tournamentRemoteTest() throws Exception
+	{
+		try (VerifierServer server = VerifierServer.loopback(sk);
+		     VerifierClient client = VerifierClient.loopback(sk.getPublicKey(), server))
+		{
+			EncryptedTournament   tournament = new EncryptedTournament(new Comparator(client, ComparisonMode.BOTH_OPERANDS));
+			List<EncryptedNumber> encrypted  = new ArrayList<>();
+			
+			for (long x : new long[]{12, -40, 97, 3, 55})
+			{
+				encrypted.add(cxt.encrypt(x));
+			}
+			EncryptedTournament.Result max = tournament.max(encrypted, 8);
+			
+			assertThat(sk.decrypt(max.getValue()).decodeLong(), is(97L));
+			assertThat(sk.decrypt(max.getIndex()).decodeLong(), is(2L));
+			// one blinded difference per pair of (value, index) tuples
+			assertThat(server.getComparisons(), is(4L));
+		}
+	}
+	
+	@Test
+	public void compareCacheTest() throws Exception
+	{
+		Comparator            comp     = new Comparator(sk, ComparisonMode.BLINDED_DIFFERENCE);
+		ComparisonCache       cache    = comp.enableCache(8, 1 << 20, 60000);
+		List<EncryptedNumber> a        = new ArrayList<>();
+		List<EncryptedNumber> b        = new ArrayList<>();
+		int[]                 expected = new int[test_iterations];
+		
+		for (int i = 0; i < test_iterations; i++)
+		{
+			BigInteger x = BigInteger.valueOf(rand.nextInt(5));
+			BigInteger y = BigInteger.valueOf(rand.nextInt(5));
+			
+			// stored ciphertexts are obfuscated, equal values do not share a ciphertext
+			a.add(cxt.encrypt(x).obfuscate());
+			b.add(cxt.encrypt(y).obfuscate());
+			expected[i] = x.compareTo(y);
+		}
+		EncryptedNumber first = comp.compare(a.get(0), b.get(0), 3);
+		EncryptedNumber again = comp.compare(a.get(0), b.get(0), 3);
+		
+		assertThat(sk.decrypt(again).decodeBigInteger(), is(BigInteger.valueOf(expected[0])));
+		assertThat(again.getCipherText(), not(first.getCipherText()));
+		assertThat(cache.getHits(), is(1L));
+		
+		List<EncryptedNumber> all = comp.compareAll(a.subList(0, 8), b.subList(0, 8), 3);
+		
+		for (int i = 0; i < 8; i++)
+		{
+			assertThat(sk.decrypt(all.get(i)).decodeBigInteger(), is(BigInteger.valueOf(expected[i])));
+		}
+		assertThat(cache.getHits(), is(2L));
+		assertThat(cache.getMisses(), is(8L));
+		assertThat(cache.getSize(), is(8));
+		
+		comp.compareAll(a, b, 3);
+		assertThat(cache.getSize(), is(8));
+		assertThat(cache.getEvictions(), is((long) test_iterations - 8));
+		assertThat(cache.getBytes() <= cache.getMaxBytes(), is(true));
+		
+		ComparisonCache expiring = comp.enableCache(8, 1 << 20, 1);
+		
+		comp.compare(a.get(0), b.get(0), 3);
+		Thread.sleep(5);
+		comp.compare(a.get(0), b.get(0), 3);
+		assertThat(expiring.getHits(), is(0L));
+		assertThat(expiring.getHitRate(), is(0.0));
+	}
+	
+	@Test
+	public void compareCacheExponentTest()
+	{
+		Comparator      comp  = new Comparator(sk, ComparisonMode.BLINDED_DIFFERENCE);
+		ComparisonCache cache = comp.enableCache(8, 1 << 20, 60000);
+		EncryptedNumber x     = cxt.encrypt(16);
+		EncryptedNumber y     = cxt.encrypt(1);
+		EncryptedNumber b     = cxt.encrypt(4);
+		
+		// unobfuscated, 16 and 1 share a ciphertext and differ only in the exponent
+		assertThat(x, is(y));
+		assertThat(x.getExponent(), not(y.getExponent()));
+		
+		assertThat(sk.decrypt(comp.compare(x, b, 5)).decodeLong(), is(1L));
+		assertThat(sk.decrypt(comp.compare(y, b, 5)).decodeLong(), is(-1L));
+		assertThat(cache.getHits(), is(0L));
+		assertThat(cache.getMisses(), is(2L));
+	}
+	
+	@Test
+	public void comparePackedDifferencesTest()
+	{
+		Comparator comp = new Comparator(sk, ComparisonMode.PACKED_DIFFERENCES);
+		
+		for (int l : new int[]{10, Comparator.MAX_BIT_LENGTH})
+		{
+			BigInteger            bound    = BigInteger.ONE.shiftLeft(l).subtract(BigInteger.ONE);
+			List<EncryptedNumber> a        = new ArrayList<>();
+			List<EncryptedNumber> b        = new ArrayList<>();
+			int                   n        = 2 * test_iterations + 1;
+			int[]                 expected = new int[n];
+			
+			for (int i = 0; i < n; i++)
+			{
+				// include the extremes, whose blinded differences use the full width of a slot
+				BigInteger x = i % 5 == 0 ? bound : randBigInteger(bound).subtract(bound.shiftRight(1));
+				BigInteger y = i % 5 == 0 ? bound.negate() : i % 3 == 0 ? x : randBigInteger(bound).subtract(bound.shiftRight(1));
+				
+				if (i % 10 == 0)
+				{
+					BigInteger t = x;
+					
+					x = y;
+					y = t;
+				}
+				a.add(cxt.encrypt(x));
+				b.add(cxt.encrypt(y));
+				expected[i] = x.compareTo(y);
+			}
+			List<EncryptedNumber> res = comp.compareAll(a, b, l);
+			
+			for (int i = 0; i < n; i++)
+			{
+				assertThat(sk.decrypt(res.get(i)).decodeBigInteger(), is(BigInteger.valueOf(expected[i])));
+			}
+		}
+	}
+	
+	private List<BigInteger> decrypt(List<EncryptedNumber> encrypted)
+	{
+		List<BigInteger> decrypted = new ArrayList<>();
+		
+		for (EncryptedNumber number : encrypted)
+		{
+			decrypted.add(sk.decrypt(number).decodeBigInteger());
+		}
+		return decrypted;
+	}
+	
+	private static List<BigInteger> bigIntegers(long... values)
+	{
+		BigInteger[] result = new BigInteger[values.length];
+		
+		for (int i = 0; i < values.length; i++)
+		{
+			result[i] = BigInteger.valueOf(values[i]);
+		}
+		return Arrays.asList(result);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+import com.tudelft.paillier.EncryptedNumber;
+import com.tudelft.paillier.ObfuscationPool;
+import com.tudelft.paillier.PaillierContext;
+import com.tudelft.paillier.PaillierPrivateKey;
+import com.tudelft.paillier.PaillierPublicKey;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+public class ObfuscationPoolTest
+{
+	private PaillierPrivateKey sk;
+	private PaillierPublicKey  pk;
+	private PaillierContext    cxt;
+
+	public ObfuscationPoolTest() throws Exception
+	{
+		sk = PaillierPrivateKey.create(1024);
+		pk = sk.getPublicKey();
+		cxt = pk.createSignedContext();
+	}
+
+	@Test
+	public void testPooledObfuscation() throws Exception
+	{
+		ObfuscationPool pool = pk.enableObfuscationPool(4, 16, 2);
+
+		try
+		{
+			for (int i = 0; i < 200 && pool.size() < 16; i++)
+			{
+				Thread.sleep(10);
+			}
+			for (int i = 0; i < 32; i++)
+			{
+				EncryptedNumber enc = cxt.encrypt(BigInteger.valueOf(i - 16)).obfuscate();
+
+				Assert.assertEquals(BigInteger.valueOf(i - 16), sk.decrypt(enc).decodeBigInteger());
+			}
+			Assert.assertEquals(32, pool.getHits() + pool.getMisses());
+			Assert.assertTrue(pool.getHits() > 0);
+			Assert.assertTrue(pool.getRefills() > 0);
+		}
+		finally
+		{
+			pk.disableObfuscationPool();
+		}
+		Assert.assertNull(pk.getObfuscationPool());
+		Assert.assertFalse(pool.isRunning());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidWatermarks()
+	{
+		pk.enableObfuscationPool(8, 8, 1);
+	}
+}
@@ -0,0 +1,176 @@
+import com.tudelft.paillier.EncodeException;
+import com.tudelft.paillier.EncodedNumber;
+import com.tudelft.paillier.EncryptedAccumulator;
+import com.tudelft.paillier.EncryptedNumber;
+import com.tudelft.paillier.PackedEncodingScheme;
+import com.tudelft.paillier.PaillierContext;
+import com.tudelft.paillier.PaillierPrivateKey;
+import com.tudelft.paillier.util.BigIntegerUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+@SuppressWarnings("Duplicates")
+public class PaillierContextTest
+{
+	private PaillierPrivateKey sk;
+	private PaillierContext    cxt;
+	private Random             rand;
+
+	public PaillierContextTest() throws Exception
+	{
+		sk = PaillierPrivateKey.create(1024);
+		cxt = sk.getPublicKey().createSignedContext();
+		rand = new Random(333333333333L);
+	}
+
+	@Test
+	public void testMultiModPow()
+	{
+		BigInteger modulus = sk.getPublicKey().getModulusSquared();
+
+		for (int k : new int[]{2, 5, 200})
+		{
+			BigInteger[] bases     = new BigInteger[k];
+			BigInteger[] exponents = new BigInteger[k];
+			BigInteger   expected  = BigInteger.ONE;
+
+			for (int i = 0; i < k; i++)
+			{
+				bases[i] = new BigInteger(1000, rand);
+				exponents[i] = new BigInteger(1 + rand.nextInt(128), rand);
+				expected = expected.multiply(bases[i].modPow(exponents[i], modulus)).mod(modulus);
+			}
+			Assert.assertEquals(expected, BigIntegerUtil.multiModPow(bases, exponents, modulus));
+		}
+	}
+
+	@Test
+	public void testLinearCombination()
+	{
+		int               k           = 40;
+		EncryptedNumber[] ciphertexts = new EncryptedNumber[k];
+		EncodedNumber[]   weights     = new EncodedNumber[k];
+		long              expected    = 0;
+
+		for (int i = 0; i < k; i++)
+		{
+			long x = rand.nextInt(1 << 20) - (1 << 19);
+			long w = rand.nextInt(1 << 10) - (1 << 9);
+
+			ciphertexts[i] = cxt.encrypt(x);
+			weights[i] = cxt.encode(w);
+			expected += x * w;
+		}
+		Assert.assertEquals(expected, sk.decrypt(cxt.linearCombination(ciphertexts, weights)).decodeLong());
+	}
+
+	@Test
+	public void testLinearCombinationExponents()
+	{
+		EncryptedNumber[] ciphertexts = {cxt.encrypt(1.5), cxt.encrypt(-2.25), cxt.encrypt(4)};
+		EncodedNumber[]   weights     = {cxt.encode(0.5), cxt.encode(3), cxt.encode(-1.125)};
+		double            expected    = 1.5 * 0.5 + -2.25 * 3 + 4 * -1.125;
+
+		Assert.assertEquals(expected, sk.decrypt(cxt.linearCombination(ciphertexts, weights)).decodeDouble(), 1e-12);
+	}
+
+	@Test
+	public void testMultiplySmallAndNegativeScalars()
+	{
+		for (long k : new long[]{-3, -2, -1, 0, 1, 2, 3, -1000, 1000, Long.MIN_VALUE + 1, Long.MAX_VALUE})
+		{
+			BigInteger      x   = BigInteger.valueOf(rand.nextInt() / 2);
+			EncryptedNumber enc = cxt.encrypt(x);
+
+			Assert.assertEquals(x.multiply(BigInteger.valueOf(k)), sk.decrypt(enc.multiply(k)).decodeBigInteger());
+		}
+		Assert.assertEquals(-2.5 * -0.75, sk.decrypt(cxt.encrypt(-2.5).multiply(-0.75)).decodeDouble(), 1e-12);
+	}
+
+	@Test
+	public void testPackedEncoding()
+	{
+		PaillierContext      packedCxt = sk.getPublicKey().createPackedContext(32, 16);
+		PackedEncodingScheme packing   = (PackedEncodingScheme) packedCxt.getEncodingScheme();
+		int                  slots     = packing.getSlots();
+		long[]               a         = new long[slots];
+		long[]               b         = new long[slots];
+		long[]               expected  = new long[slots];
+
+		Assert.assertEquals(1023 / 48, slots);
+		for (int i = 0; i < slots; i++)
+		{
+			a[i] = rand.nextInt();
+			b[i] = rand.nextInt();
+			expected[i] = (a[i] + b[i]) * -3;
+		}
+		EncryptedNumber sum = packedCxt.encrypt(packing.encode(a)).add(packedCxt.encrypt(packing.encode(b)));
+
+		Assert.assertArrayEquals(expected, packing.decodeLongs(sk.decrypt(sum.multiply(-3))));
+		Assert.assertArrayEquals(new long[slots], packing.decodeLongs(sk.decrypt(sum.subtract(sum))));
+	}
+
+	@Test
+	public void testPackedEncodingExtremes()
+	{
+		// without headroom the extremes of the slots are the extremes of the packed integer
+		PaillierContext      packedCxt = sk.getPublicKey().createPackedContext(32, 0);
+		PackedEncodingScheme packing   = (PackedEncodingScheme) packedCxt.getEncodingScheme();
+		int                  slots     = packing.getSlots();
+
+		for (long extreme : new long[]{-Integer.MAX_VALUE, Integer.MAX_VALUE})
+		{
+			long[] values = new long[slots];
+
+			Arrays.fill(values, extreme);
+			Assert.assertArrayEquals(values, packing.decodeLongs(sk.decrypt(packedCxt.encrypt(packing.encode(values)))));
+			values = new long[slots];
+			values[slots - 1] = extreme;
+			Assert.assertArrayEquals(values, packing.decodeLongs(sk.decrypt(packedCxt.encrypt(packing.encode(values)))));
+		}
+	}
+
+	@Test(expected = EncodeException.class)
+	public void testPackedEncodingAsymmetricMinimum()
+	{
+		PaillierContext packedCxt = sk.getPublicKey().createPackedContext(32, 0);
+
+		((PackedEncodingScheme) packedCxt.getEncodingScheme()).encode(new long[]{Integer.MIN_VALUE});
+	}
+
+	@Test(expected = EncodeException.class)
+	public void testPackedEncodingSlotOverflow()
+	{
+		PaillierContext packedCxt = sk.getPublicKey().createPackedContext(32, 16);
+
+		((PackedEncodingScheme) packedCxt.getEncodingScheme()).encode(new long[]{1, 1L << 31});
+	}
+
+	@Test
+	public void testAccumulator()
+	{
+		int               n         = 200;
+		EncryptedNumber[] encrypted = new EncryptedNumber[n];
+		double            expected  = 0;
+
+		for (int i = 0; i < n; i++)
+		{
+			double x = i % 3 == 0 ? rand.nextInt(1000) - 500 : (rand.nextInt(4000) - 2000) / 8.0;
+
+			encrypted[i] = cxt.encrypt(x);
+			expected += x;
+		}
+		EncryptedAccumulator accumulator = new EncryptedAccumulator(cxt);
+
+		IntStream.range(0, n).parallel().forEach(i -> accumulator.add(encrypted[i]));
+
+		Assert.assertEquals(n, accumulator.getCount());
+		Assert.assertEquals(expected, sk.decrypt(accumulator.result()).decodeDouble(), 1e-9);
+		Assert.assertEquals(0, sk.decrypt(new EncryptedAccumulator(cxt).result()).decodeLong());
+	}
+}
@@ -1,6 +1,8 @@
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
+import com.tudelft.paillier.JournaledPrivateKeyRing;
+import com.tudelft.paillier.KeyRingSession;
 import com.tudelft.paillier.PaillierKeyMismatchException;
 import com.tudelft.paillier.PaillierPrivateKey;
 import com.tudelft.paillier.PaillierPrivateKeyRing;
@@ -12,9 +14,15 @@ import static org.hamcrest.CoreMatchers.*;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
@@ -57,6 +65,8 @@ public class PaillierPrivateKeyRingTest
 				PaillierPrivateKeyRing.AESKeyFile.toFile().delete();
 				PaillierPrivateKeyRing.passHashFile.toFile().delete();
 			}
+			PaillierPrivateKeyRing.indexFile.toFile().delete();
+			JournaledPrivateKeyRing.journalFile.toFile().delete();
 		}
 		PaillierPrivateKeyRing.keyDir.toFile().delete();
 		skRing.writeToFile();
@@ -153,4 +163,207 @@ public class PaillierPrivateKeyRingTest
 			Assert.assertEquals(e.getClass().toString(), "class com.google.gson.JsonSyntaxException");
 		}
 	}
+	
+	@Test
+	public void testIndexedStorage() throws IOException
+	{
+		skRing.writeToIndexedFile();
+		
+		PaillierPrivateKeyRing skRing2 = PaillierPrivateKeyRing.loadFromIndexedFile(password);
+		
+		assertEquals(4, skRing2.size());
+		Assert.assertTrue(skRing2.keys().containsAll(skRing.keys()));
+		assertEquals(sk2, skRing2.get(2));
+		Assert.assertNull(skRing2.get(4));
+		
+		skRing2.put(4, sk0);
+		skRing2.writeToIndexedFile();
+		
+		PaillierPrivateKeyRing skRing3 = PaillierPrivateKeyRing.loadFromIndexedFile(password);
+		
+		assertEquals(sk0, skRing3.get(4));
+		assertEquals(sk3, skRing3.slice(Arrays.asList(1, 3)).get(3));
+		skRing.put(4, sk0);
+		assertEquals(skRing, skRing3);
+	}
+	
+	@Test
+	public void testRepeatedWrites() throws IOException
+	{
+		skRing.writeToFile();
+		
+		byte[] AESKey   = Files.readAllBytes(PaillierPrivateKeyRing.AESKeyFile);
+		byte[] passHash = Files.readAllBytes(PaillierPrivateKeyRing.passHashFile);
+		
+		skRing.writeToIndexedFile();
+		skRing.writeToFile();
+		
+		// the key files are generated once, later writes keep them
+		Assert.assertArrayEquals(AESKey, Files.readAllBytes(PaillierPrivateKeyRing.AESKeyFile));
+		Assert.assertArrayEquals(passHash, Files.readAllBytes(PaillierPrivateKeyRing.passHashFile));
+		assertEquals(skRing, PaillierPrivateKeyRing.loadFromFile(password));
+		assertEquals(skRing, PaillierPrivateKeyRing.loadFromIndexedFile(password));
+		Assert.assertFalse(new File(PaillierPrivateKeyRing.keyRingFile + ".tmp").exists());
+		Assert.assertFalse(new File(PaillierPrivateKeyRing.indexFile + ".tmp").exists());
+	}
+	
+	@Test
+	public void testUnlockSession() throws Exception
+	{
+		KeyRingSession session = PaillierPrivateKeyRing.unlock(password, 60000);
+		
+		try
+		{
+			PaillierPrivateKeyRing skRing2 = PaillierPrivateKeyRing.loadFromFile(session);
+			
+			assertEquals(skRing, skRing2);
+			
+			skRing2.put(4, sk0);
+			skRing2.writeToFile(session);
+			skRing2.writeToIndexedFile(session);
+			assertEquals(sk0, PaillierPrivateKeyRing.loadFromFile(session).get(4));
+			assertEquals(sk0, PaillierPrivateKeyRing.loadFromIndexedFile(session).get(4));
+			assertEquals(sk0, PaillierPrivateKeyRing.loadFromFile(password).get(4));
+		}
+		finally
+		{
+			session.close();
+		}
+		Assert.assertFalse(session.isOpen());
+		try
+		{
+			PaillierPrivateKeyRing.loadFromFile(session);
+			fail("A closed session should not decrypt the keyring");
+		}
+		catch (IllegalStateException e) { }
+		
+		// a keyring loaded with a session does not outlive it
+		KeyRingSession         closing = PaillierPrivateKeyRing.unlock(password, 60000);
+		PaillierPrivateKeyRing skRing3 = PaillierPrivateKeyRing.loadFromIndexedFile(closing);
+		
+		assertEquals(sk1, skRing3.get(1));
+		closing.close();
+		assertEquals(sk1, skRing3.get(1));
+		try
+		{
+			skRing3.get(2);
+			fail("A closed session should not decrypt an unopened key");
+		}
+		catch (IllegalStateException e) { }
+		try
+		{
+			skRing3.writeToFile();
+			fail("A closed session should not encrypt the keyring");
+		}
+		catch (IllegalStateException e) { }
+		
+		KeyRingSession expired = PaillierPrivateKeyRing.unlock(password, 1);
+		
+		Thread.sleep(5);
+		Assert.assertFalse(expired.isOpen());
+	}
+	
+	@Test
+	public void testJournal() throws Exception
+	{
+		KeyRingSession session = PaillierPrivateKeyRing.unlock(password, 60000);
+		
+		try (JournaledPrivateKeyRing journaled = JournaledPrivateKeyRing.open(session, 0))
+		{
+			journaled.put(0, sk0);
+			journaled.put(1, sk1);
+			assertEquals(2, journaled.getJournalRecords());
+		}
+		try (JournaledPrivateKeyRing journaled = JournaledPrivateKeyRing.open(session, 0))
+		{
+			assertEquals(2, journaled.size());
+			assertEquals(sk1, journaled.get(1));
+			journaled.compact();
+			assertEquals(0, journaled.getJournalRecords());
+			assertEquals(0, JournaledPrivateKeyRing.journalFile.toFile().length());
+			journaled.put(2, sk2);
+		}
+		// records torn by a crash during a put, with an incomplete header or an incomplete key, are cut off
+		long   intact = JournaledPrivateKeyRing.journalFile.toFile().length();
+		CRC32  crc    = new CRC32();
+		byte[] length = {0, 0, 1, 0};
+		
+		crc.update(length, 0, length.length);
+		for (byte[] torn : new byte[][]{{0, 0, 1, 0, 1, 2, 3},
+		                                ByteBuffer.allocate(15).put(length).putInt((int) crc.getValue()).array()})
+		{
+			try (FileOutputStream fos = new FileOutputStream(JournaledPrivateKeyRing.journalFile.toFile(), true))
+			{
+				fos.write(torn);
+			}
+			try (JournaledPrivateKeyRing journaled = JournaledPrivateKeyRing.open(session, 0))
+			{
+				assertEquals(Arrays.asList(0, 1, 2), journaled.keys().stream().sorted().collect(Collectors.toList()));
+				assertEquals(1, journaled.getJournalRecords());
+				assertEquals(sk0, journaled.get(0));
+			}
+			assertEquals(intact, JournaledPrivateKeyRing.journalFile.toFile().length());
+		}
+		try (JournaledPrivateKeyRing journaled = JournaledPrivateKeyRing.open(session, 0))
+		{
+			journaled.put(3, sk3);
+			assertEquals(sk3, journaled.get(3));
+		}
+		// a corrupt record followed by valid ones is not cut off, opening fails and leaves the journal alone,
+		// whether its key or its length is corrupt
+		byte[] journalBytes = Files.readAllBytes(JournaledPrivateKeyRing.journalFile);
+		
+		for (int offset : new int[]{14, 1})
+		{
+			byte[] corrupted = journalBytes.clone();
+			
+			corrupted[offset] ^= 1;
+			Files.write(JournaledPrivateKeyRing.journalFile, corrupted);
+			try
+			{
+				JournaledPrivateKeyRing.open(session, 0).close();
+				fail("A corrupt journal record should not be cut off");
+			}
+			catch (IOException e) { }
+			Assert.assertArrayEquals(corrupted, Files.readAllBytes(JournaledPrivateKeyRing.journalFile));
+		}
+		Files.write(JournaledPrivateKeyRing.journalFile, journalBytes);
+		// the background compaction folds the journal into the snapshot
+		try (JournaledPrivateKeyRing journaled = JournaledPrivateKeyRing.open(session, 20))
+		{
+			for (int i = 0; i < 500 && journaled.getJournalRecords() > 0; i++)
+			{
+				Thread.sleep(10);
+			}
+			assertEquals(0, journaled.getJournalRecords());
+		}
+		session.close();
+		assertEquals(sk3, PaillierPrivateKeyRing.loadFromIndexedFile(password).get(3));
+		try
+		{
+			JournaledPrivateKeyRing.open(session, 0).close();
+			fail("A closed session should not open the journaled keyring");
+		}
+		catch (IllegalStateException e) { }
+	}
+	
+	@Test
+	public void testJournalCompactionFailure() throws Exception
+	{
+		KeyRingSession session = PaillierPrivateKeyRing.unlock(password, 60000);
+		
+		try (JournaledPrivateKeyRing journaled = JournaledPrivateKeyRing.open(session, 200))
+		{
+			journaled.put(0, sk0);
+			// the snapshot cannot be written once the session is closed
+			session.close();
+			for (int i = 0; i < 500 && journaled.getCompactionFailures() == 0; i++)
+			{
+				Thread.sleep(10);
+			}
+			Assert.assertTrue(journaled.getCompactionFailures() > 0);
+			Assert.assertThat(journaled.getLastCompactionFailure(), instanceOf(IllegalStateException.class));
+			assertEquals(1, journaled.getJournalRecords());
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,223 @@
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.tudelft.paillier.EncodedNumber;
+import com.tudelft.paillier.EncryptedNumber;
+import com.tudelft.paillier.PaillierContext;
+import com.tudelft.paillier.PaillierContextMismatchException;
+import com.tudelft.paillier.PaillierKeyFactory;
+import com.tudelft.paillier.PaillierPrivateKey;
+import com.tudelft.paillier.PaillierRuntimeException;
+import com.tudelft.paillier.PrivateKeyJsonSerializer;
+import com.tudelft.paillier.PrivatePaillierContext;
+import com.tudelft.paillier.util.SerialisationUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+@SuppressWarnings("Duplicates")
+public class PaillierPrivateKeyTest
+{
+	private PaillierPrivateKey sk;
+	private PaillierContext    cxt;
+	private Random             rand;
+	private int                test_iterations;
+
+	public PaillierPrivateKeyTest() throws Exception
+	{
+		sk = PaillierPrivateKey.create(1024);
+		cxt = sk.getPublicKey().createSignedContext();
+		rand = new Random(333333333333L);
+		test_iterations = 20;
+	}
+
+	@Test
+	public void testPrivateKeyEncryption()
+	{
+		for (int i = 0; i < test_iterations; i++)
+		{
+			BigInteger m = new BigInteger(512, rand);
+			BigInteger c = sk.raw_encrypt(m);
+
+			Assert.assertEquals(m, sk.raw_decrypt(c));
+			Assert.assertNotEquals(sk.getPublicKey().raw_encrypt_without_obfuscation(m), c);
+		}
+	}
+
+	@Test
+	public void testPrivateContextObfuscation()
+	{
+		PrivatePaillierContext privateCxt = sk.createSignedContext();
+
+		for (int i = 0; i < test_iterations; i++)
+		{
+			BigInteger      a   = BigInteger.valueOf(rand.nextInt() / 2);
+			BigInteger      b   = BigInteger.valueOf(rand.nextInt() / 2);
+			EncryptedNumber sum = privateCxt.encrypt(a).obfuscate().add(cxt.encrypt(b));
+
+			Assert.assertEquals(a.add(b), sk.decrypt(sum).decodeBigInteger());
+		}
+	}
+
+	@Test
+	public void testBatchDecryption()
+	{
+		long[]            values    = new long[test_iterations];
+		EncryptedNumber[] encrypted = new EncryptedNumber[test_iterations];
+
+		for (int i = 0; i < test_iterations; i++)
+		{
+			values[i] = rand.nextLong();
+			encrypted[i] = cxt.encrypt(values[i]);
+		}
+		ForkJoinPool        pool    = new ForkJoinPool(2);
+		List<EncodedNumber> decoded = sk.decryptAll(Arrays.asList(encrypted), pool);
+
+		for (int i = 0; i < test_iterations; i++)
+		{
+			Assert.assertEquals(values[i], decoded.get(i).decodeLong());
+		}
+		Assert.assertArrayEquals(values, sk.decryptLongs(encrypted, pool));
+		pool.shutdown();
+	}
+
+	@Test
+	public void testBatchDecryptionDoubles()
+	{
+		double[]          values    = new double[test_iterations];
+		EncryptedNumber[] encrypted = new EncryptedNumber[test_iterations];
+
+		for (int i = 0; i < test_iterations; i++)
+		{
+			values[i] = rand.nextDouble() * 1000 - 500;
+			encrypted[i] = cxt.encrypt(values[i]);
+		}
+		Assert.assertArrayEquals(values, sk.decryptDoubles(encrypted), 1e-9);
+	}
+
+	@Test(expected = PaillierContextMismatchException.class)
+	public void testBatchDecryptionContextMismatch()
+	{
+		PaillierContext unsignedCxt = sk.getPublicKey().createUnsignedContext();
+
+		sk.decryptAll(new EncryptedNumber[]{cxt.encrypt(1), unsignedCxt.encrypt(2)});
+	}
+
+	@Test
+	public void testSplitDecryption()
+	{
+		for (int i = 0; i < test_iterations; i++)
+		{
+			BigInteger      m   = BigInteger.valueOf(rand.nextLong());
+			EncryptedNumber enc = cxt.encrypt(m).obfuscate();
+
+			Assert.assertEquals(sk.decrypt(enc), sk.decryptSplit(enc));
+			Assert.assertEquals(m, sk.decryptSplit(enc).decodeBigInteger());
+		}
+	}
+
+	@Test
+	public void testKeyFactory() throws Exception
+	{
+		PaillierKeyFactory factory = new PaillierKeyFactory(512, 2, 2);
+
+		try
+		{
+			for (int i = 0; i < 200 && factory.getPoolDepth() < 2; i++)
+			{
+				Thread.sleep(10);
+			}
+			for (int i = 0; i < 4; i++)
+			{
+				PaillierPrivateKey key = factory.create();
+				BigInteger         m   = new BigInteger(256, rand);
+
+				Assert.assertEquals(512, key.getPublicKey().getModulus().bitLength());
+				Assert.assertEquals(m, key.raw_decrypt(key.getPublicKey().raw_encrypt(m)));
+			}
+			Assert.assertEquals(4, factory.getPoolHits() + factory.getPoolMisses());
+			Assert.assertTrue(factory.getGeneratedKeys() >= 4);
+			Assert.assertTrue(factory.getAverageGenerationMillis() > 0);
+		}
+		finally
+		{
+			factory.shutdown();
+		}
+	}
+
+	@Test
+	public void testKeyFactoryWithoutPool() throws Exception
+	{
+		PaillierKeyFactory factory = new PaillierKeyFactory(512, 0, 2);
+
+		try
+		{
+			Assert.assertEquals(512, factory.create().getPublicKey().getModulus().bitLength());
+			Assert.assertEquals(0, factory.getPoolHits());
+			Assert.assertEquals(0, factory.getPoolMisses());
+			Assert.assertEquals(1, factory.getGeneratedKeys());
+		}
+		finally
+		{
+			factory.shutdown();
+		}
+	}
+
+	@Test
+	public void testKeyFactoryShutdown() throws Exception
+	{
+		PaillierKeyFactory factory = new PaillierKeyFactory(512, 4, 2);
+
+		// an on-demand keypair is found while the refill keeps the workers busy
+		Assert.assertEquals(512, factory.generate().getPublicKey().getModulus().bitLength());
+		factory.shutdown();
+		try
+		{
+			factory.generate();
+			Assert.fail("A shut down factory should not generate keypairs");
+		}
+		catch (PaillierRuntimeException e) { }
+	}
+
+	@Test
+	public void testSerializationWithDecryptionConstants()
+	{
+		PrivateKeyJsonSerializer serializer = new PrivateKeyJsonSerializer();
+
+		sk.serialize(serializer);
+
+		JsonObject         json   = (JsonObject) new JsonParser().parse(serializer.toString());
+		PaillierPrivateKey sk2    = SerialisationUtil.unserialise_private(json);
+		BigInteger         m      = new BigInteger(256, rand);
+		EncryptedNumber    secret = cxt.encrypt(m);
+
+		Assert.assertEquals(PrivateKeyJsonSerializer.VERSION_CRT, json.get("version").getAsInt());
+		Assert.assertEquals(sk, sk2);
+		Assert.assertEquals(m, sk2.decrypt(secret).decodeBigInteger());
+
+		// keys of the lambda-only form are still read
+		json.remove("version");
+
+		PaillierPrivateKey sk3 = SerialisationUtil.unserialise_private(json);
+
+		Assert.assertEquals(sk, sk3);
+		Assert.assertEquals(m, sk3.decrypt(secret).decodeBigInteger());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSerializationWithWrongDecryptionConstants()
+	{
+		PrivateKeyJsonSerializer serializer = new PrivateKeyJsonSerializer();
+
+		sk.serialize(serializer);
+
+		JsonObject json = serializer.getNode();
+
+		json.add("p_inv", json.get("p_sq_inv"));
+		SerialisationUtil.unserialise_private(json);
+	}
+}
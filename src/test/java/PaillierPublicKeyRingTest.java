@@ -1,6 +1,7 @@
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
+import com.tudelft.paillier.MappedPublicKeyRing;
 import com.tudelft.paillier.PaillierPrivateKey;
 import com.tudelft.paillier.PaillierPublicKey;
 import com.tudelft.paillier.PaillierPublicKeyRing;
@@ -10,6 +11,7 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 
 import static junit.framework.TestCase.fail;
 import static org.hamcrest.CoreMatchers.is;
@@ -48,6 +50,7 @@ public class PaillierPublicKeyRingTest
 			{
 				PaillierPublicKeyRing.keyRingFile.toFile().delete();
 			}
+			PaillierPublicKeyRing.indexFile.toFile().delete();
 		}
 		PaillierPublicKeyRing.keyDir.toFile().delete();
 	}
@@ -123,4 +126,36 @@ public class PaillierPublicKeyRingTest
 			Assert.assertEquals(e.getClass().toString(), "class com.google.gson.JsonSyntaxException");
 		}
 	}
+	
+	@Test
+	public void testIndexedStorage() throws Exception
+	{
+		pkRing.put(-7, pk0.withFixedBaseObfuscation(128));
+		pkRing.writeToIndexedFile();
+		
+		try (MappedPublicKeyRing mappedRing = MappedPublicKeyRing.open(PaillierPublicKeyRing.indexFile, 2))
+		{
+			Assert.assertEquals(5, mappedRing.size());
+			Assert.assertEquals(Arrays.asList(-7, 0, 1, 2, 3), mappedRing.keys());
+			Assert.assertEquals(pk2, mappedRing.get(2));
+			Assert.assertEquals(128, mappedRing.get(-7).getObfuscationExponentLength());
+			Assert.assertNull(mappedRing.get(4));
+			Assert.assertFalse(mappedRing.contains(4));
+			Assert.assertEquals(pk2, mappedRing.get(2));
+			Assert.assertEquals(1, mappedRing.getHits());
+			Assert.assertEquals(3, mappedRing.getMisses());
+			Assert.assertEquals(pkRing, mappedRing.slice(pkRing.keys()));
+			
+			// the file is replaced, not overwritten, an open keyring keeps reading the old one
+			pkRing.put(4, pk0);
+			pkRing.writeToIndexedFile();
+			Assert.assertEquals(5, mappedRing.size());
+			Assert.assertEquals(pk1, mappedRing.get(1));
+		}
+		try (MappedPublicKeyRing mappedRing = MappedPublicKeyRing.open(PaillierPublicKeyRing.indexFile, 2))
+		{
+			Assert.assertEquals(6, mappedRing.size());
+			Assert.assertEquals(pk0, mappedRing.get(4));
+		}
+	}
 }
\ No newline at end of file
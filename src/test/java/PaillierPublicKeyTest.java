@@ -0,0 +1,117 @@
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.tudelft.paillier.EncryptedNumber;
+import com.tudelft.paillier.FixedBaseTable;
+import com.tudelft.paillier.ObfuscationMode;
+import com.tudelft.paillier.PaillierContext;
+import com.tudelft.paillier.PaillierPrivateKey;
+import com.tudelft.paillier.PaillierPublicKey;
+import com.tudelft.paillier.PrivatePaillierContext;
+import com.tudelft.paillier.PublicKeyJsonSerializer;
+import com.tudelft.paillier.util.SerialisationUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+@SuppressWarnings("Duplicates")
+public class PaillierPublicKeyTest
+{
+	private PaillierPrivateKey sk;
+	private PaillierPublicKey  pk;
+	private Random             rand;
+	private int                test_iterations;
+
+	public PaillierPublicKeyTest() throws Exception
+	{
+		sk = PaillierPrivateKey.create(1024, PaillierPublicKey.DEFAULT_OBFUSCATION_EXPONENT_LENGTH);
+		pk = sk.getPublicKey();
+		rand = new Random(333333333333L);
+		test_iterations = 20;
+	}
+
+	@Test
+	public void testFixedBaseObfuscation()
+	{
+		PaillierContext cxt = new PaillierContext(pk, true, pk.getModulus().bitLength(), 16,
+				ObfuscationMode.FIXED_BASE);
+
+		for (int i = 0; i < test_iterations; i++)
+		{
+			BigInteger      m   = BigInteger.valueOf(rand.nextLong());
+			EncryptedNumber enc = cxt.encrypt(m);
+
+			Assert.assertNotEquals(enc.obfuscate().getCipherText(), enc.obfuscate().getCipherText());
+			Assert.assertEquals(m, sk.decrypt(enc.obfuscate()).decodeBigInteger());
+		}
+	}
+
+	@Test
+	public void testFixedBaseTable()
+	{
+		BigInteger     base  = pk.getModulusSquared().subtract(BigInteger.valueOf(rand.nextInt(1000) + 2));
+		FixedBaseTable table = new FixedBaseTable(base, 171, pk.getModulusSquared());
+
+		Assert.assertEquals(BigInteger.ONE, table.pow(BigInteger.ZERO));
+		for (int i = 0; i < test_iterations; i++)
+		{
+			BigInteger exponent = new BigInteger(171, rand);
+
+			Assert.assertEquals(base.modPow(exponent, pk.getModulusSquared()), table.pow(exponent));
+		}
+		Assert.assertEquals(base.modPow(BigInteger.ONE.shiftLeft(171).subtract(BigInteger.ONE), pk.getModulusSquared()),
+				table.pow(BigInteger.ONE.shiftLeft(171).subtract(BigInteger.ONE)));
+	}
+
+	@Test
+	public void testFixedBaseContextEquality()
+	{
+		int             precision = pk.getModulus().bitLength();
+		PaillierContext full      = new PaillierContext(pk, true, precision, 16, ObfuscationMode.FULL_EXPONENT);
+		PaillierContext fixed     = new PaillierContext(pk, true, precision, 16, ObfuscationMode.FIXED_BASE);
+
+		Assert.assertEquals(full, pk.createSignedContext());
+		Assert.assertNotEquals(full, fixed);
+		Assert.assertNotEquals(full.hashCode(), fixed.hashCode());
+		Assert.assertNotEquals(sk.createSignedContext(),
+				new PrivatePaillierContext(sk, true, precision, 16, ObfuscationMode.FIXED_BASE));
+	}
+
+	@Test
+	public void testFixedBasePrivateContext()
+	{
+		PrivatePaillierContext cxt = new PrivatePaillierContext(sk, true, pk.getModulus().bitLength(), 16,
+				ObfuscationMode.FIXED_BASE);
+
+		for (int i = 0; i < test_iterations; i++)
+		{
+			BigInteger      m   = BigInteger.valueOf(rand.nextLong());
+			EncryptedNumber enc = cxt.encrypt(m).obfuscate();
+
+			Assert.assertEquals(ObfuscationMode.FIXED_BASE, enc.getContext().getObfuscationMode());
+			Assert.assertEquals(m, sk.decrypt(enc).decodeBigInteger());
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testFixedBaseRequiresBase()
+	{
+		new PaillierContext(new PaillierPublicKey(pk.getModulus()), true, 64, 16, ObfuscationMode.FIXED_BASE);
+	}
+
+	@Test
+	public void testFixedBaseSerialization()
+	{
+		PublicKeyJsonSerializer serializer = new PublicKeyJsonSerializer();
+
+		pk.serialize(serializer);
+
+		JsonObject        json = (JsonObject) new JsonParser().parse(serializer.toString());
+		PaillierPublicKey pk2  = SerialisationUtil.unserialise_public(json);
+
+		Assert.assertEquals(pk, pk2);
+		Assert.assertEquals(pk.getObfuscationBase(), pk2.getObfuscationBase());
+		Assert.assertEquals(pk.getObfuscationExponentLength(), pk2.getObfuscationExponentLength());
+	}
+}